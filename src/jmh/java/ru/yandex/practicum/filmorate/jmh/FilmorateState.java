@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.controller.EncodedResponseCache;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+//хранилища и сервисы собраны вручную поверх встроенной H2 с одним соединением, без контекста Spring и прокси;
+//размеры данных задаются через -p films=...,users=...
+@State(Scope.Benchmark)
+public class FilmorateState {
+    @Param({"1000"})
+    public int films;
+
+    @Param({"1000"})
+    public int users;
+
+    @Param({"50"})
+    public int friendsPerUser;
+
+    @Param({"20"})
+    public int likesPerFilm;
+
+    public FilmDbStorage filmStorage;
+    public UserDbStorage userStorage;
+    public GenreDbStorage genreStorage;
+    public FilmService filmService;
+    public UserService userService;
+    public RecommendationService recommendationService;
+    public ObjectMapper objectMapper;
+    public EncodedResponseCache responseCache;
+
+    private SingleConnectionDataSource dataSource;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1", "sa", "", true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        seed(jdbc);
+
+        MPADbStorage mpaStorage = new MPADbStorage(jdbc, new MpaRowMapper());
+        mpaStorage.reload();
+        genreStorage = new GenreDbStorage(jdbc, new GenreRowMapper());
+        genreStorage.reload();
+        FilmPopularityLeaderboard leaderboard = new FilmPopularityLeaderboard(jdbc);
+        leaderboard.rebuild();
+        LikeMatrix likeMatrix = new LikeMatrix(jdbc);
+        likeMatrix.rebuild();
+        FilmSearchIndex searchIndex = new FilmSearchIndex(jdbc, leaderboard);
+        searchIndex.rebuild();
+        FilmTitleSuggester titleSuggester = new FilmTitleSuggester(jdbc);
+        titleSuggester.rebuild();
+        FriendGraph friendGraph = new FriendGraph(jdbc);
+        friendGraph.rebuild();
+        UserLoginSuggester loginSuggester = new UserLoginSuggester(jdbc);
+        loginSuggester.rebuild();
+        FilmCache filmCache = new FilmCache(1 << 24);
+
+        filmStorage = new FilmDbStorage(jdbc, new FilmRowMapper(), mpaStorage, genreStorage, leaderboard,
+                likeMatrix, searchIndex, titleSuggester, filmCache);
+        userStorage = new UserDbStorage(jdbc, new UserRowMapper(), friendGraph, loginSuggester,
+                new UserCache(1 << 23), filmCache, leaderboard, likeMatrix, titleSuggester);
+        filmService = new FilmService(filmStorage, userStorage);
+        userService = new UserService(userStorage);
+        recommendationService = new RecommendationService(likeMatrix, filmStorage, userStorage);
+        //настройки дат как у ObjectMapper из Spring Boot
+        objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        responseCache = new EncodedResponseCache(objectMapper, true, 1024);
+        random = new SplittableRandom(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    public long randomFilmId() {
+        return 1 + random.nextInt(films);
+    }
+
+    public long randomUserId() {
+        return 1 + random.nextInt(users);
+    }
+
+    //названия засеянных фильмов - Film1..FilmN, поэтому префикс совпадает примерно с десятой частью каталога
+    public String randomTitlePrefix() {
+        return "film" + (1 + random.nextInt(9));
+    }
+
+    public Film newFilm() {
+        Film film = new Film();
+        film.setName("Benchmark film");
+        film.setDescription("Desc");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100L);
+        MPA mpa = new MPA();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        film.setGenres(new ArrayList<>(genreStorage.getOrCheckGenresByIds(List.of(1L, 2L))));
+        return film;
+    }
+
+    private void seed(JdbcTemplate jdbc) {
+        SplittableRandom seedRandom = new SplittableRandom(7);
+
+        List<Object[]> userRows = new ArrayList<>();
+        for (long id = 1; id <= users; id++) {
+            userRows.add(new Object[]{id, id + "@ya.ru", "user" + id, "user" + id, "1990-01-01"});
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", userRows);
+        jdbc.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (users + 1));
+
+        List<Object[]> filmRows = new ArrayList<>();
+        List<Object[]> genreRows = new ArrayList<>();
+        for (long id = 1; id <= films; id++) {
+            filmRows.add(new Object[]{id, "Film" + id, "Desc", "2000-01-01", 100, 1 + id % 5});
+            genreRows.add(new Object[]{id, 1 + id % 6});
+            genreRows.add(new Object[]{id, 1 + (id + 3) % 6});
+        }
+        jdbc.batchUpdate("INSERT INTO films (id, name, description, release_date, duration, mpa_id)" +
+                " VALUES (?, ?, ?, ?, ?, ?)", filmRows);
+        jdbc.batchUpdate("INSERT INTO films_genres (film_id, genre_id) VALUES (?, ?)", genreRows);
+        jdbc.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (films + 1));
+
+        List<Object[]> likeRows = new ArrayList<>();
+        for (long filmId = 1; filmId <= films; filmId++) {
+            for (int i = 0; i < likesPerFilm; i++) {
+                likeRows.add(new Object[]{filmId, 1 + seedRandom.nextInt(users)});
+            }
+        }
+        jdbc.batchUpdate("MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)", likeRows);
+        jdbc.update("UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)");
+
+        List<Object[]> friendRows = new ArrayList<>();
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < friendsPerUser; i++) {
+                friendRows.add(new Object[]{userId, 1 + seedRandom.nextInt(users)});
+            }
+        }
+        jdbc.batchUpdate("MERGE INTO friendships (user_id, friend_id, status) KEY (user_id, friend_id)" +
+                " VALUES (?, ?, 'pending')", friendRows);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.jmh;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.controller.EncodedResponseCache;
+
+import java.util.concurrent.TimeUnit;
+
+//тело ответа популярных фильмов и жанров: сборка и сериализация Jackson на каждый запрос против готовых байт
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+
+    @Benchmark
+    public byte[] popularFilmsJackson(FilmorateState state) throws JsonProcessingException {
+        return state.objectMapper.writeValueAsBytes(state.filmService.showMostPopularFilms(10L, 0L));
+    }
+
+    @Benchmark
+    public EncodedResponseCache.EncodedBody popularFilmsCached(FilmorateState state) {
+        return state.responseCache.get("films/popular?count=10", state.filmService.getPopularFilmsVersion(),
+                () -> state.filmService.showMostPopularFilms(10L, 0L));
+    }
+
+    @Benchmark
+    public byte[] genresJackson(FilmorateState state) throws JsonProcessingException {
+        return state.objectMapper.writeValueAsBytes(state.genreStorage.getAllGenres());
+    }
+
+    @Benchmark
+    public EncodedResponseCache.EncodedBody genresCached(FilmorateState state) {
+        return state.responseCache.get("genres", state.genreStorage.getVersion().version(),
+                state.genreStorage::getAllGenres);
+    }
+}
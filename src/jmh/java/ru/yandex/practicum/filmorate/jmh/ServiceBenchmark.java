@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeState;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//то же, что и StorageBenchmark, но вместе с проверками и догрузкой сущностей в сервисах
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @Benchmark
+    public List<Film> showMostPopularFilms(FilmorateState state) {
+        return state.filmService.showMostPopularFilms(10L, 0L);
+    }
+
+    @Benchmark
+    public List<User> showAllCommonFriends(FilmorateState state) {
+        return state.userService.showAllCommonFriends(state.randomUserId(), state.randomUserId());
+    }
+
+    @Benchmark
+    public List<User> showAllFriends(FilmorateState state) {
+        return state.userService.showAllFriends(state.randomUserId());
+    }
+
+    @Benchmark
+    public List<Film> getRecommendations(FilmorateState state) {
+        return state.recommendationService.getRecommendations(state.randomUserId(), 10);
+    }
+
+    @Benchmark
+    public LikeState addLike(FilmorateState state) {
+        return state.filmService.addLike(state.randomFilmId(), state.randomUserId());
+    }
+
+    @Benchmark
+    public Film createFilm(FilmorateState state) {
+        return state.filmService.createFilm(state.newFilm());
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Benchmark
+    public List<Film> filmsGetAll(FilmorateState state) {
+        return state.filmStorage.getAll();
+    }
+
+    @Benchmark
+    public Film filmGetOrCheckById(FilmorateState state) {
+        return state.filmStorage.getOrCheckById(state.randomFilmId());
+    }
+
+    @Benchmark
+    public List<User> usersGetAll(FilmorateState state) {
+        return state.userStorage.getAll();
+    }
+
+    @Benchmark
+    public User userGetOrCheckById(FilmorateState state) {
+        return state.userStorage.getOrCheckById(state.randomUserId());
+    }
+
+    @Benchmark
+    public List<Genre> genresGetAll(FilmorateState state) {
+        return state.genreStorage.getAllGenres();
+    }
+
+    @Benchmark
+    public List<Long> mostPopularFilmIds(FilmorateState state) {
+        return state.filmStorage.getMostPopularFilms(10L, 0L);
+    }
+
+    @Benchmark
+    public List<Suggestion> filmTitleSuggest(FilmorateState state) {
+        return state.filmStorage.suggestFilms(state.randomTitlePrefix(), 10);
+    }
+
+    @Benchmark
+    public long[] commonFriendIds(FilmorateState state) {
+        return state.userStorage.getCommonFriends(state.randomUserId(), state.randomUserId());
+    }
+
+    //каждый вызов добавляет строку, таблица фильмов растет в ходе замера
+    @Benchmark
+    public Film filmSave(FilmorateState state) {
+        return state.filmStorage.save(state.newFilm());
+    }
+
+    //повторный лайк той же пары не вставляет строку, поэтому после насыщения замеряется и этот путь
+    @Benchmark
+    public void filmAddLike(FilmorateState state) {
+        state.filmStorage.addLike(state.randomFilmId(), state.randomUserId());
+    }
+}
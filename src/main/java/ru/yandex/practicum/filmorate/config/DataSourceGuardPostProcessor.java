@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.db.guard.enabled", havingValue = "true")
+public class DataSourceGuardPostProcessor implements BeanPostProcessor {
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final Duration acquireTimeout;
+
+    public DataSourceGuardPostProcessor(
+            @Value("${filmorate.db.guard.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxConcurrent,
+            @Value("${filmorate.db.guard.max-waiting:1000}") int maxWaiting,
+            @Value("${filmorate.db.guard.acquire-timeout:5s}") Duration acquireTimeout) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof GuardedDataSource)) {
+            log.info("Соединения с базой ограничены: одновременно {}, в очереди {}, ожидание {}",
+                    maxConcurrent, maxWaiting, acquireTimeout);
+            return new GuardedDataSource(dataSource, maxConcurrent, maxWaiting, acquireTimeout);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+
+import java.util.function.Supplier;
+
+//условный GET: If-None-Match и If-Modified-Since сверяются с версией до чтения сущности,
+//поэтому ответ 304 не загружает сущность и не сериализует JSON;
+//тело читается после версии, так что ETag может быть только старше тела, но не новее
+@Component
+@RequiredArgsConstructor
+class ConditionalResponses {
+    private static final String CACHE_CONTROL_PROPERTY = "filmorate.http.cache-control.";
+    private static final String DEFAULT_CACHE_CONTROL = "no-cache";
+
+    private final Environment environment;
+
+    <T> ResponseEntity<T> of(WebRequest request, String resource, EntityVersion version, Supplier<T> body) {
+        return ofResponse(request, resource, version, () -> ResponseEntity.ok(body.get()));
+    }
+
+    //ответ собирается целиком, например из готовых байт; у сжатого тела ETag слабый - байты другие, смысл тот же
+    <T> ResponseEntity<T> ofResponse(WebRequest request, String resource, EntityVersion version,
+                                     Supplier<ResponseEntity<T>> response) {
+        String etag = version.etag();
+        long lastModified = version.modifiedAt().toEpochMilli();
+        HttpHeaders headers = new HttpHeaders();
+        String cacheControl = environment.getProperty(CACHE_CONTROL_PROPERTY + resource, DEFAULT_CACHE_CONTROL);
+        if (StringUtils.hasText(cacheControl)) {
+            headers.setCacheControl(cacheControl);
+        }
+
+        if (request.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+        ResponseEntity<T> ready = response.get();
+        boolean compressed = ready.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING);
+        return ResponseEntity.ok()
+                .headers(ready.getHeaders())
+                .headers(headers)
+                .eTag(compressed ? "W/" + etag : etag)
+                .lastModified(lastModified)
+                .body(ready.getBody());
+    }
+}
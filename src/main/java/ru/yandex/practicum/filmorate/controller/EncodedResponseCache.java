@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.exceptions.InternalServerException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+//готовые байты JSON по ключу "ресурс + параметры": запись годна, пока не изменилась версия источника,
+//а версию поднимают методы хранилищ, меняющие строки; байты уходят в ответ как есть, Jackson не вызывается
+@Slf4j
+@Component
+public class EncodedResponseCache implements MeterBinder {
+    private static final String GZIP = "gzip";
+
+    private final ObjectMapper objectMapper;
+    private final boolean gzipEnabled;
+    private final int gzipMinSize;
+    private final Map<String, EncodedBody> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    //gzip == null, если тело меньше порога или сжатие выключено
+    public record EncodedBody(long version, byte[] json, byte[] gzip) {
+    }
+
+    public EncodedResponseCache(ObjectMapper objectMapper,
+                                @Value("${filmorate.response-cache.gzip:true}") boolean gzipEnabled,
+                                @Value("${filmorate.response-cache.gzip-min-size:1024}") int gzipMinSize) {
+        this.objectMapper = objectMapper;
+        this.gzipEnabled = gzipEnabled;
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.response.cache", hits, LongAdder::sum)
+                .description("Ответы, отданные из готовых байт")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.response.cache", misses, LongAdder::sum)
+                .description("Ответы, сериализованные заново")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("filmorate.response.cache.entries", entries, Map::size)
+                .description("Закэшированные ответы")
+                .register(registry);
+    }
+
+    //версия читается вызывающим до тела, поэтому запись может оказаться только новее своей версии, но не старше;
+    //запись более старой версии не вытесняет более новую
+    public EncodedBody get(String key, long version, Supplier<?> body) {
+        EncodedBody cached = entries.get(key);
+        if (cached != null && cached.version() == version) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        EncodedBody encoded = encode(version, body.get());
+        entries.merge(key, encoded, (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+        return encoded;
+    }
+
+    public ResponseEntity<byte[]> respond(WebRequest request, String key, long version, Supplier<?> body) {
+        EncodedBody encoded = get(key, version, body);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (encoded.gzip() == null) {
+            return response.body(encoded.json());
+        }
+        response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(encoded.gzip());
+        }
+        return response.body(encoded.json());
+    }
+
+    private EncodedBody encode(long version, Object body) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            log.error("Не удалось сериализовать ответ", e);
+            throw new InternalServerException("Не удалось сериализовать ответ");
+        }
+        return new EncodedBody(version, json, gzipEnabled && json.length >= gzipMinSize ? gzip(json) : null);
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    //gzip;q=0 означает явный отказ от сжатия
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (parts[0].strip().equalsIgnoreCase(GZIP)) {
+                return parts.length < 2 || !parts[1].strip().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.ExportService;
+
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/export")
+public class ExportController {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final ExportService exportService;
+
+    @GetMapping("/films")
+    public ResponseEntity<StreamingResponseBody> exportFilms(
+            @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("Запрос на выгрузку фильмов");
+        return stream(acceptEncoding, out -> exportService.exportFilms(after, out));
+    }
+
+    @GetMapping("/users")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("Запрос на выгрузку пользователей");
+        return stream(acceptEncoding, out -> exportService.exportUsers(after, out));
+    }
+
+    @GetMapping("/likes")
+    public ResponseEntity<StreamingResponseBody> exportLikes(
+            @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+            @RequestParam(required = false) @PositiveOrZero Long afterUser,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("Запрос на выгрузку лайков");
+        return stream(acceptEncoding, out -> exportService.exportLikes(after, afterUser, out));
+    }
+
+    @GetMapping("/friendships")
+    public ResponseEntity<StreamingResponseBody> exportFriendships(
+            @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+            @RequestParam(required = false) @PositiveOrZero Long afterFriend,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("Запрос на выгрузку дружб");
+        return stream(acceptEncoding, out -> exportService.exportFriendships(after, afterFriend, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String acceptEncoding, StreamingResponseBody body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!EncodedResponseCache.acceptsGzip(acceptEncoding)) {
+            return response.body(body);
+        }
+
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body(out -> {
+                    GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+                    body.writeTo(gzip);
+                    gzip.finish();
+                });
+    }
+}
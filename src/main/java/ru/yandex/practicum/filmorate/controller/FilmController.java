@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,11 +13,17 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeState;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 
 import java.util.List;
 
@@ -25,20 +32,35 @@ import java.util.List;
 @RequiredArgsConstructor
 @RequestMapping("/films")
 public class FilmController {
+    //верх рейтинга без фильтров отдается готовыми байтами, глубокие страницы и фильтры - как обычно
+    private static final long CACHED_POPULAR_MAX_COUNT = 100;
+
     private final FilmService filmService;
+    private final ConditionalResponses conditionalResponses;
+    private final EncodedResponseCache responseCache;
 
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<Film> getAllFilms() {
-        log.info("Запрос на получение списка фильмов");
-        return filmService.getAllFilms();
+    public ResponseEntity<List<Film>> getAllFilms(@RequestParam(defaultValue = "100") int limit,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(defaultValue = "false") boolean unpaged,
+                                                  @RequestParam(required = false) List<Long> ids) {
+        if (ids != null) {
+            log.info("Запрос на получение фильмов по списку id");
+            return ResponseEntity.ok(filmService.getFilmsByIds(ids));
+        }
+        if (unpaged) {
+            log.info("Запрос на получение списка фильмов");
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+        log.info("Запрос на получение страницы фильмов");
+        return PagedResponses.of(filmService.getFilmsPage(after, limit));
     }
 
     @GetMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public Film getFilmById(@PathVariable @Positive Long id) {
+    public ResponseEntity<Film> getFilmById(@PathVariable @Positive Long id, WebRequest request) {
         log.info("Запрос на получение фильма по id");
-        return filmService.getFilmById(id);
+        return conditionalResponses.of(request, "films", filmService.getFilmVersion(id),
+                () -> filmService.getFilmById(id));
     }
 
     @PostMapping
@@ -55,26 +77,54 @@ public class FilmController {
         return filmService.updateFilm(film);
     }
 
+    //по умолчанию возвращается только состояние лайка, фильм целиком - с ?full=true
     @PutMapping("/{id}/like/{userId}")
-    @ResponseStatus(HttpStatus.OK)
-    public Film addLike(@PathVariable @Positive Long id,
-                        @PathVariable @Positive Long userId) {
+    public ResponseEntity<?> addLike(@PathVariable @Positive Long id,
+                                     @PathVariable @Positive Long userId,
+                                     @RequestParam(defaultValue = "false") boolean full) {
         log.info("Запрос на добавление лайка");
-        return filmService.addLike(id, userId);
+        LikeState state = filmService.addLike(id, userId);
+        return ResponseEntity.ok(full ? filmService.getFilmById(id) : state);
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    @ResponseStatus(HttpStatus.OK)
-    public Film deleteLike(@PathVariable @Positive Long id,
-                           @PathVariable @Positive Long userId) {
+    public ResponseEntity<?> deleteLike(@PathVariable @Positive Long id,
+                                        @PathVariable @Positive Long userId,
+                                        @RequestParam(defaultValue = "false") boolean full) {
         log.info("Запрос на удаление лайка");
-        return filmService.deleteLike(id, userId);
+        LikeState state = filmService.deleteLike(id, userId);
+        return ResponseEntity.ok(full ? filmService.getFilmById(id) : state);
     }
 
     @GetMapping("/popular")
-    @ResponseStatus(HttpStatus.OK)
-    public List<Film> showMostPopular(@RequestParam(defaultValue = "10") @Positive Long count) {
+    public ResponseEntity<?> showMostPopular(@RequestParam(defaultValue = "10") @Positive Long count,
+                                      @RequestParam(defaultValue = "0") @PositiveOrZero Long offset,
+                                      @RequestParam(required = false) @Positive Long genreId,
+                                      @RequestParam(required = false) @Positive Long mpaId,
+                                      @RequestParam(required = false) @Positive @Max(9999) Integer year,
+                                      WebRequest request) {
         log.info("Запрос на получение списка самых популярных фильмов");
-        return filmService.showMostPopularFilms(count);
+        if (genreId == null && mpaId == null && year == null && offset == 0 && count <= CACHED_POPULAR_MAX_COUNT) {
+            long version = filmService.getPopularFilmsVersion();
+            return responseCache.respond(request, "films/popular?count=" + count, version,
+                    () -> filmService.showMostPopularFilms(count, offset));
+        }
+        return ResponseEntity.ok(filmService.showMostPopularFilms(count, offset, genreId, mpaId, year));
+    }
+
+    @GetMapping("/search")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Film> searchFilms(@RequestParam @NotBlank String q,
+                                  @RequestParam(defaultValue = "20") @Positive @Max(1000) int limit) {
+        log.info("Запрос на поиск фильмов");
+        return filmService.searchFilms(q, limit);
+    }
+
+    @GetMapping("/suggest")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Suggestion> suggestFilms(@RequestParam @NotBlank String prefix,
+                                         @RequestParam(defaultValue = "10") @Positive @Max(100) int limit) {
+        log.trace("Запрос на подсказки по названиям фильмов");
+        return filmService.suggestFilms(prefix, limit);
     }
 }
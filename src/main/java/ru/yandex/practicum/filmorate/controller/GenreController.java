@@ -5,6 +5,7 @@ import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,30 +13,36 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
-import java.util.List;
-
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/genres")
 public class GenreController {
     private final GenreService genreService;
+    private final ConditionalResponses conditionalResponses;
+    private final EncodedResponseCache responseCache;
 
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<Genre> getAllGenres() {
+    public ResponseEntity<byte[]> getAllGenres(WebRequest request) {
         log.info("Запрос на получение всех жанров");
-        return genreService.getAllGenres();
+        EntityVersion version = genreService.getGenresVersion();
+        return conditionalResponses.ofResponse(request, "genres", version,
+                () -> responseCache.respond(request, "genres", version.version(), genreService::getAllGenres));
     }
 
     @GetMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public Genre getGenreById(@PathVariable @Positive Long id) {
+    public ResponseEntity<byte[]> getGenreById(@PathVariable @Positive Long id, WebRequest request) {
         log.info("Запрос на получение жанра по id");
-        return genreService.getGenreById(id);
+        //ETag общий со всем справочником, поэтому несуществующий id проверяется до сверки, иначе вместо 404 будет 304
+        EntityVersion version = genreService.getGenresVersion();
+        Genre genre = genreService.getGenreById(id);
+        return conditionalResponses.ofResponse(request, "genres", version,
+                () -> responseCache.respond(request, "genres/" + id, version.version(), () -> genre));
     }
 
     @PostMapping
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.ImportFormat;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.InputStream;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+public class ImportController {
+    private final ImportService importService;
+
+    @PostMapping("/films")
+    public ImportReport importFilms(InputStream body,
+                                    @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        return importService.importFilms(body, formatOf(contentType));
+    }
+
+    @PostMapping("/users")
+    public ImportReport importUsers(InputStream body,
+                                    @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        return importService.importUsers(body, formatOf(contentType));
+    }
+
+    @PostMapping("/likes")
+    public ImportReport importLikes(InputStream body,
+                                    @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        return importService.importLikes(body, formatOf(contentType));
+    }
+
+    @PostMapping("/friendships")
+    public ImportReport importFriendships(InputStream body,
+                                          @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        return importService.importFriendships(body, formatOf(contentType));
+    }
+
+    private ImportFormat formatOf(MediaType contentType) {
+        return contentType.isCompatibleWith(MediaType.parseMediaType("text/csv")) ? ImportFormat.CSV
+                : ImportFormat.NDJSON;
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,30 +13,36 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.service.MPAService;
 
-import java.util.List;
-
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/mpa")
 public class MPAController {
     private final MPAService mpaService;
+    private final ConditionalResponses conditionalResponses;
+    private final EncodedResponseCache responseCache;
 
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<MPA> getAllMpa() {
+    public ResponseEntity<byte[]> getAllMpa(WebRequest request) {
         log.info("Запрос на получение всех возрастных рейтингов");
-        return mpaService.getAllMpa();
+        EntityVersion version = mpaService.getMpaVersion();
+        return conditionalResponses.ofResponse(request, "mpa", version,
+                () -> responseCache.respond(request, "mpa", version.version(), mpaService::getAllMpa));
     }
 
     @GetMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public MPA getMpaById(@PathVariable @Positive Long id) {
+    public ResponseEntity<byte[]> getMpaById(@PathVariable @Positive Long id, WebRequest request) {
         log.info("Запрос на получение возрастного рейтинга по id");
-        return mpaService.getMpaById(id);
+        //ETag общий со всем справочником, поэтому несуществующий id проверяется до сверки, иначе вместо 404 будет 304
+        EntityVersion version = mpaService.getMpaVersion();
+        MPA mpa = mpaService.getMpaById(id);
+        return conditionalResponses.ofResponse(request, "mpa", version,
+                () -> responseCache.respond(request, "mpa/" + id, version.version(), () -> mpa));
     }
 
     @PostMapping
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+
+import java.util.List;
+
+//тело ответа остается массивом, курсор следующей страницы передается заголовком
+final class PagedResponses {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private PagedResponses() {
+    }
+
+    static <T> ResponseEntity<List<T>> of(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+}
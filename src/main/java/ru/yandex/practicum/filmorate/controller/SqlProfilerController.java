@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.metrics.SqlProfiler;
+import ru.yandex.practicum.filmorate.model.SqlStatementStats;
+
+import java.util.List;
+
+//админские ручки без авторизации: повторное выполнение медленных запросов и сброс статистики
+//открываются на общем порту только явным свойством
+@Slf4j
+@RestController
+@ConditionalOnProperty(name = "filmorate.sql.admin.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@RequestMapping("/admin/sql")
+public class SqlProfilerController {
+    private final SqlProfiler sqlProfiler;
+
+    @GetMapping("/top")
+    public List<SqlStatementStats> getTopStatements(@RequestParam(defaultValue = "20") @Positive @Max(1000) int limit) {
+        log.info("Запрос на получение самых затратных SQL-выражений");
+        return sqlProfiler.getTop(limit);
+    }
+
+    @PutMapping("/explain")
+    public boolean setExplainSlow(@RequestParam boolean enabled) {
+        log.info("Запрос на переключение сбора планов медленных запросов");
+        sqlProfiler.setExplainSlow(enabled);
+        return sqlProfiler.isExplainSlow();
+    }
+
+    @DeleteMapping("/stats")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void resetStats() {
+        log.info("Запрос на сброс статистики SQL-выражений");
+        sqlProfiler.reset();
+    }
+}
@@ -2,8 +2,12 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,8 +17,12 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
@@ -25,12 +33,31 @@ import java.util.List;
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final ConditionalResponses conditionalResponses;
 
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<User> getAllUsers() {
-        log.info("Запрос на получение списка всех пользователей");
-        return userService.getAllUsers();
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(defaultValue = "100") int limit,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(defaultValue = "false") boolean unpaged,
+                                                  @RequestParam(required = false) List<Long> ids) {
+        if (ids != null) {
+            log.info("Запрос на получение пользователей по списку id");
+            return ResponseEntity.ok(userService.getUsersByIds(ids));
+        }
+        if (unpaged) {
+            log.info("Запрос на получение списка всех пользователей");
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+        log.info("Запрос на получение страницы пользователей");
+        return PagedResponses.of(userService.getUsersPage(after, limit));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<User> getUserById(@PathVariable @Positive Long id, WebRequest request) {
+        log.info("Запрос на получение пользователя по id");
+        return conditionalResponses.of(request, "users", userService.getUserVersion(id),
+                () -> userService.getUserById(id));
     }
 
     @PostMapping
@@ -77,4 +104,20 @@ public class UserController {
         log.trace("Запрос на получение списка общих друзей");
         return userService.showAllCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/recommendations")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Film> getRecommendations(@PathVariable @Positive Long id,
+                                         @RequestParam(defaultValue = "10") @Positive int count) {
+        log.info("Запрос на получение рекомендаций фильмов");
+        return recommendationService.getRecommendations(id, count);
+    }
+
+    @GetMapping("/suggest")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Suggestion> suggestUsers(@RequestParam @NotBlank String prefix,
+                                         @RequestParam(defaultValue = "10") @Positive @Max(100) int limit) {
+        log.trace("Запрос на подсказки по логинам пользователей");
+        return userService.suggestUsers(prefix, limit);
+    }
 }
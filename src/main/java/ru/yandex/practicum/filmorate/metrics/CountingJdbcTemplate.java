@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//каждое выполняемое выражение, в том числе через NamedParameterJdbcTemplate и пакетные, засчитывается текущему запросу
+public class CountingJdbcTemplate extends JdbcTemplate {
+    public CountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        SqlStatementCounter.increment();
+        super.applyStatementSettings(stmt);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.config.GuardedDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+@Configuration
+public class MetricsConfiguration {
+
+    //заменяет JdbcTemplate из автоконфигурации, чтобы все хранилища считали выражения
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new CountingJdbcTemplate(dataSource);
+    }
+
+    //очередь за соединением у ограничителя из профиля virtual-threads; без него метрик нет
+    @Bean
+    public MeterBinder dataSourceGuardMetrics(DataSource dataSource) {
+        return registry -> {
+            GuardedDataSource guarded = unwrapGuard(dataSource);
+            if (guarded != null) {
+                Gauge.builder("filmorate.db.guard.waiting", guarded, GuardedDataSource::getWaiting)
+                        .description("Запросов в очереди за соединением")
+                        .register(registry);
+                Gauge.builder("filmorate.db.guard.available", guarded, GuardedDataSource::getAvailablePermits)
+                        .description("Свободных разрешений на соединение")
+                        .register(registry);
+            }
+        };
+    }
+
+    private static GuardedDataSource unwrapGuard(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(GuardedDataSource.class) ? dataSource.unwrap(GuardedDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+//выдает соединения, выражения которых сообщают профайлеру текст, параметры, время выполнения и число строк;
+//обертка стоит под JdbcTemplate на уровне DataSource, поэтому видит все шаблоны и работает внутри транзакций Spring
+public class ProfilingDataSource extends DelegatingDataSource {
+    private final SqlProfiler profiler;
+
+    public ProfilingDataSource(DataSource target, SqlProfiler profiler) {
+        super(target);
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return profiledConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return profiledConnection(super.getConnection(username, password));
+    }
+
+    private Connection profiledConnection(Connection target) {
+        return proxy(Connection.class, target, (method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                return proxy(PreparedStatement.class, statement,
+                        new StatementHandler(target, statement, (String) args[0])::handle);
+            }
+            if (result instanceof Statement statement && method.getName().equals("createStatement")) {
+                return proxy(Statement.class, statement, new StatementHandler(target, statement, null)::handle);
+            }
+            return result;
+        });
+    }
+
+    private class StatementHandler {
+        private final Connection connection;
+        private final Statement target;
+        private final Map<Integer, Object> params = new TreeMap<>();
+        private String sql;
+        private long elapsedNanos;
+        private long rows;
+        private int batchSize;
+        private boolean executed;
+
+        StatementHandler(Connection connection, Statement target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        Object handle(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                params.put(index, args[1]);
+            } else if (name.equals("clearParameters")) {
+                params.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+                if (args != null && args.length == 1 && sql == null) {
+                    sql = (String) args[0];
+                }
+            } else if (name.equals("close")) {
+                record();
+                return invoke(target, method, args);
+            }
+
+            if (!name.startsWith("execute")) {
+                Object result = invoke(target, method, args);
+                return result instanceof ResultSet resultSet && name.equals("getResultSet")
+                        ? countingResultSet(resultSet) : result;
+            }
+
+            if (args != null && args.length >= 1 && args[0] instanceof String statementSql) {
+                sql = statementSql;
+            }
+            long started = System.nanoTime();
+            try {
+                Object result = invoke(target, method, args);
+                if (result instanceof Integer updated) {
+                    rows += Math.max(updated, 0);
+                } else if (result instanceof Long updated) {
+                    rows += Math.max(updated, 0);
+                } else if (result instanceof int[] updated) {
+                    for (int count : updated) {
+                        rows += Math.max(count, 0);
+                    }
+                }
+                return result instanceof ResultSet resultSet ? countingResultSet(resultSet) : result;
+            } finally {
+                elapsedNanos += System.nanoTime() - started;
+                executed = true;
+            }
+        }
+
+        private ResultSet countingResultSet(ResultSet resultSet) {
+            return proxy(ResultSet.class, resultSet, (method, args) -> {
+                Object result = invoke(resultSet, method, args);
+                if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                    rows++;
+                }
+                return result;
+            });
+        }
+
+        private void record() {
+            if (executed && sql != null) {
+                profiler.record(connection, sql, params, batchSize, elapsedNanos, rows);
+                executed = false;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getName().equals("unwrap") && args[0] instanceof Class<?> iface && iface.isInstance(proxy)) {
+                return proxy;
+            }
+            return handler.handle(method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.SqlStatementStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+//статистика по тексту выражения: число вызовов, строк, суммарное и максимальное время, журнал медленных
+@Slf4j
+@Component
+public class SqlProfiler implements MeterBinder {
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    //выборки из дельта-таблиц (FINAL TABLE (UPDATE ...)) меняют данные, FOR UPDATE блокирует строки
+    private static final Pattern SIDE_EFFECTS = Pattern.compile("\\b(FINAL|NEW|OLD)\\s+TABLE\\b|\\bFOR\\s+UPDATE\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final String STORAGE_PACKAGE = "ru.yandex.practicum.filmorate.storage";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final Map<String, Stats> statsBySql = new ConcurrentHashMap<>();
+    private final long slowThresholdNanos;
+    private volatile boolean explainSlow;
+    private volatile MeterRegistry registry;
+
+    public SqlProfiler(@Value("${filmorate.sql.slow-threshold:100ms}") Duration slowThreshold,
+                       @Value("${filmorate.sql.explain-slow:false}") boolean explainSlow) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.explainSlow = explainSlow;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public boolean isExplainSlow() {
+        return explainSlow;
+    }
+
+    public void setExplainSlow(boolean explainSlow) {
+        log.info("Сбор планов медленных запросов {}", explainSlow ? "включен" : "выключен");
+        this.explainSlow = explainSlow;
+    }
+
+    public List<SqlStatementStats> getTop(int limit) {
+        return statsBySql.entrySet().stream()
+                .map(entry -> entry.getValue().toStats(entry.getKey()))
+                .sorted(Comparator.comparingDouble(SqlStatementStats::totalMs).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public void reset() {
+        statsBySql.clear();
+    }
+
+    void record(Connection connection, String sql, Map<Integer, Object> params, int batchSize,
+                long elapsedNanos, long rows) {
+        String normalizedSql = normalize(sql);
+        Stats stats = statsBySql.computeIfAbsent(normalizedSql, this::newStats);
+        stats.calls.increment();
+        stats.rows.add(rows);
+        stats.totalNanos.add(elapsedNanos);
+        stats.maxNanos.accumulate(elapsedNanos);
+        if (stats.timer != null) {
+            stats.timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        } else if (registry != null) {
+            stats.timer = timer(normalizedSql);
+            stats.timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        if (elapsedNanos >= slowThresholdNanos) {
+            stats.slowCalls.increment();
+            log.warn("Медленный запрос {} мс (строк {}{}) из {}: {} параметры {}",
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rows,
+                    batchSize > 0 ? ", пакет " + batchSize : "", callingStorageMethod().orElse("неизвестно"),
+                    sql, params);
+            if (explainSlow && isSelect(sql)) {
+                explain(connection, sql, params).ifPresent(plan -> {
+                    stats.lastSlowPlan = plan;
+                    log.warn("План медленного запроса:\n{}", plan);
+                });
+            }
+        }
+    }
+
+    private Stats newStats(String normalizedSql) {
+        Stats stats = new Stats();
+        if (registry != null) {
+            stats.timer = timer(normalizedSql);
+        }
+        return stats;
+    }
+
+    private Timer timer(String normalizedSql) {
+        return Timer.builder("filmorate.sql.statement")
+                .description("Время выполнения SQL-выражения")
+                .tag("sql", normalizedSql)
+                .register(registry);
+    }
+
+    //списки IN разной длины и числа в тексте не должны плодить отдельные записи
+    static String normalize(String sql) {
+        String normalized = IN_LIST.matcher(sql).replaceAll("(?...)");
+        normalized = NUMBER.matcher(normalized).replaceAll("?");
+        return SPACES.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private static boolean isSelect(String sql) {
+        return sql.stripLeading().toUpperCase(Locale.ROOT).startsWith("SELECT");
+    }
+
+    //EXPLAIN ANALYZE выполняет запрос повторно, поэтому только для SELECT и на том же соединении;
+    //выражения с побочными эффектами получают план без выполнения
+    private Optional<String> explain(Connection connection, String sql, Map<Integer, Object> params) {
+        String command = SIDE_EFFECTS.matcher(sql).find() ? "EXPLAIN " : "EXPLAIN ANALYZE ";
+        try (PreparedStatement explain = connection.prepareStatement(command + sql)) {
+            for (Map.Entry<Integer, Object> param : params.entrySet()) {
+                explain.setObject(param.getKey(), param.getValue());
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+                return Optional.of(plan.toString().trim());
+            }
+        } catch (SQLException e) {
+            log.warn("Не удалось получить план запроса: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<String> callingStorageMethod() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(STORAGE_PACKAGE))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName()));
+    }
+
+    private static class Stats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder slowCalls = new LongAdder();
+        private volatile Timer timer;
+        private volatile String lastSlowPlan;
+
+        SqlStatementStats toStats(String sql) {
+            long callCount = calls.sum();
+            double totalMs = totalNanos.sum() / 1e6;
+            return new SqlStatementStats(sql, callCount, rows.sum(), totalMs,
+                    callCount == 0 ? 0 : totalMs / callCount, maxNanos.get() / 1e6, slowCalls.sum(), lastSlowPlan);
+        }
+    }
+}
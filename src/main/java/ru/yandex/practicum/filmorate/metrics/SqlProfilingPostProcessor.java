@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+//обертки соединений, выражений и курсоров стоят на каждом запросе, поэтому профилирование включается явно
+@Component
+@ConditionalOnProperty(name = "filmorate.sql.profiling.enabled", havingValue = "true")
+public class SqlProfilingPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<SqlProfiler> profiler;
+
+    public SqlProfilingPostProcessor(ObjectProvider<SqlProfiler> profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProfilingDataSource)) {
+            return new ProfilingDataSource(dataSource, profiler.getObject());
+        }
+        return bean;
+    }
+}
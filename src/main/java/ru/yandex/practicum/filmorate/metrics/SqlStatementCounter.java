@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+//счетчик SQL-выражений текущего HTTP-запроса; вне запроса (планировщик, старт приложения) ничего не считает
+public final class SqlStatementCounter {
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    static void start() {
+        CURRENT.set(new int[1]);
+    }
+
+    static int stop() {
+        int[] counter = CURRENT.get();
+        CURRENT.remove();
+        return counter == null ? 0 : counter[0];
+    }
+
+    static void increment() {
+        int[] counter = CURRENT.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.List;
+
+public record CursorPage<T>(List<T> items, String nextCursor) {
+}
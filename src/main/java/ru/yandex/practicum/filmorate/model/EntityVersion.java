@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.Instant;
+
+//версия строки или справочника: по ней строятся ETag и Last-Modified без чтения самой сущности;
+//время входит в ETag, чтобы строка, пересозданная с тем же id, не совпала со старой
+public record EntityVersion(long version, Instant modifiedAt) {
+    public String etag() {
+        return "\"" + version + "-" + modifiedAt.toEpochMilli() + "\"";
+    }
+}
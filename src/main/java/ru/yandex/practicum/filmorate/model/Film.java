@@ -32,4 +32,6 @@ public class Film {
 
     @NotNull
     private MPA mpa;
+
+    private Long likesCount = 0L;
 }
\ No newline at end of file
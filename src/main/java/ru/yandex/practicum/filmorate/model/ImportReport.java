@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.List;
+
+public record ImportReport(long rowsRead, long rowsImported, long rowsFailed, List<ImportError> errors) {
+}
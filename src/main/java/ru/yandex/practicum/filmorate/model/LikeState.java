@@ -0,0 +1,4 @@
+package ru.yandex.practicum.filmorate.model;
+
+public record LikeState(Long filmId, Long userId, boolean liked, long likesCount) {
+}
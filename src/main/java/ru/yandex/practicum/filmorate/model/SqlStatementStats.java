@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.model;
+
+public record SqlStatementStats(String sql, long calls, long rows, double totalMs, double meanMs, double maxMs,
+                                long slowCalls, String lastSlowPlan) {
+}
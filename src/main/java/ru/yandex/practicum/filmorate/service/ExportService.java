@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.exportStorage.ExportDbStorage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+    private final ExportDbStorage exportDbStorage;
+    private final ObjectMapper objectMapper;
+
+    public void exportFilms(long afterId, OutputStream out) throws IOException {
+        log.info("Поступил запрос на выгрузку фильмов");
+        writeNdjson(out, consumer -> exportDbStorage.exportFilms(afterId, consumer));
+    }
+
+    public void exportUsers(long afterId, OutputStream out) throws IOException {
+        log.info("Поступил запрос на выгрузку пользователей");
+        writeNdjson(out, consumer -> exportDbStorage.exportUsers(afterId, consumer));
+    }
+
+    //курсор - последняя выгруженная пара ключей; без второй части выгрузка продолжается со следующего фильма
+    public void exportLikes(long afterFilmId, Long afterUserId, OutputStream out) throws IOException {
+        log.info("Поступил запрос на выгрузку лайков");
+        writeNdjson(out, consumer -> exportDbStorage.exportLikes(afterFilmId, orWholeKey(afterUserId), consumer));
+    }
+
+    public void exportFriendships(long afterUserId, Long afterFriendId, OutputStream out) throws IOException {
+        log.info("Поступил запрос на выгрузку дружб");
+        writeNdjson(out, consumer -> exportDbStorage.exportFriendships(afterUserId, orWholeKey(afterFriendId),
+                consumer));
+    }
+
+    private static long orWholeKey(Long secondKey) {
+        return secondKey == null ? Long.MAX_VALUE : secondKey;
+    }
+
+    //по объекту на строку; без сброса буфера после каждой записи, данные уходят клиенту по мере заполнения буфера
+    private void writeNdjson(OutputStream out, Consumer<Consumer<Object>> export) throws IOException {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); //поток закрывает вызывающий код
+            try {
+                export.accept(value -> {
+                    try {
+                        writer.writeValue(generator, value);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) { //клиент отключился, запрос к базе уже прерван
+                throw e.getCause();
+            }
+        }
+    }
+}
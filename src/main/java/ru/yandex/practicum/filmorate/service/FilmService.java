@@ -1,46 +1,74 @@
 package ru.yandex.practicum.filmorate.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
-import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.model.LikeState;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.storage.filmStorage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeWriteBuffer;
 import ru.yandex.practicum.filmorate.storage.userStorage.UserStorage;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class FilmService {
+    private static final String FILMS_CURSOR_SCOPE = "films";
+
     private final FilmStorage filmDbStorage;
     private final UserStorage userDbStorage;
-    private final MPADbStorage mpaDbStorage;
-    private final GenreDbStorage genreDbStorage;
+    //есть только при filmorate.likes.write-behind.enabled=true
+    private final LikeWriteBuffer likeWriteBuffer;
+
+    public FilmService(FilmStorage filmDbStorage, UserStorage userDbStorage) {
+        this(filmDbStorage, userDbStorage, null);
+    }
+
+    @Autowired
+    public FilmService(FilmStorage filmDbStorage, UserStorage userDbStorage,
+                       @Nullable LikeWriteBuffer likeWriteBuffer) {
+        this.filmDbStorage = filmDbStorage;
+        this.userDbStorage = userDbStorage;
+        this.likeWriteBuffer = likeWriteBuffer;
+    }
 
     public List<Film> getAllFilms() {
         log.info("Поступил запрос на получение списка фильмов");
         return filmDbStorage.getAll();
     }
 
+    public CursorPage<Film> getFilmsPage(String after, int limit) {
+        log.info("Поступил запрос на получение страницы фильмов");
+        PageCursors.checkLimit(limit);
+        long afterId = PageCursors.decode(FILMS_CURSOR_SCOPE, after);
+        return PageCursors.toPage(FILMS_CURSOR_SCOPE, filmDbStorage.getPage(afterId, limit + 1), limit, Film::getId);
+    }
+
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        log.info("Поступил запрос на получение фильмов по списку id");
+        PageCursors.checkIdsCount(ids);
+        return filmDbStorage.getByIds(ids);
+    }
+
     public Film getFilmById(Long id) {
         log.info("Поступил запрос на получение фильма по id");
-        Film film = filmDbStorage.getOrCheckById(id);
+        return filmDbStorage.getOrCheckById(id);
+    }
 
-        film.setGenres(genreDbStorage.getFilmsGenres(id));
-        film.setMpa(mpaDbStorage.getOrCheckMpaById(film.getMpa().getId()));
-        return film;
+    public EntityVersion getFilmVersion(Long id) {
+        log.info("Поступил запрос на получение версии фильма");
+        return filmDbStorage.getOrCheckVersion(id);
     }
 
     public Film createFilm(Film film) {
         log.info("Поступил запрос на добавление нового фильма");
         Film savedFilm = filmDbStorage.save(film);
-        savedFilm.setMpa(mpaDbStorage.getOrCheckMpaById(film.getMpa().getId()));
-        savedFilm.setGenres(genreDbStorage.getFilmsGenres(savedFilm.getId()));
         log.info("Фильм успешно сохранен");
         return savedFilm;
     }
@@ -56,38 +84,56 @@ public class FilmService {
         return filmDbStorage.updateById(newFilm.getId(), newFilm);
     }
 
-    public Film addLike(Long id, Long userId) {
-        log.info("Проверка пользователя на null");
-        userDbStorage.getOrCheckById(userId);
-
-        log.info("Проверка фильма на null");
-        Film film = filmDbStorage.getOrCheckById(id);
-
-        filmDbStorage.addLike(id, userId);
+    public LikeState addLike(Long id, Long userId) {
+        log.info("Поступил запрос на добавление лайка");
+        if (likeWriteBuffer != null) {
+            LikeState state = likeWriteBuffer.addLike(id, userId);
+            log.info("Лайк от пользователя поставлен в очередь на запись");
+            return state;
+        }
+        LikeState state = filmDbStorage.addLike(id, userId);
         log.info("Лайк от пользователя добавлен");
-        return film;
+        return state;
     }
 
-    public Film deleteLike(Long id, Long userId) {
-        log.info("Проверка пользователя на null");
-        userDbStorage.getOrCheckById(userId);
-
-        log.info("Проверка фильма на null");
-        Film film = filmDbStorage.getOrCheckById(id);
-
-        filmDbStorage.deleteLike(id, userId);
+    public LikeState deleteLike(Long id, Long userId) {
+        log.info("Поступил запрос на удаление лайка");
+        if (likeWriteBuffer != null) {
+            LikeState state = likeWriteBuffer.deleteLike(id, userId);
+            log.info("Удаление лайка поставлено в очередь на запись");
+            return state;
+        }
+        LikeState state = filmDbStorage.deleteLike(id, userId);
         log.info("Лайк от пользователя удален");
-        return film;
+        return state;
     }
 
-    public List<Film> showMostPopularFilms(Long limit) {
+    public List<Film> showMostPopularFilms(Long count, Long offset) {
+        return showMostPopularFilms(count, offset, null, null, null);
+    }
+
+    public List<Film> showMostPopularFilms(Long count, Long offset, Long genreId, Long mpaId, Integer year) {
         log.info("Поступил запрос на получение списка популярных фильмов");
-        List<Film> resultList = new ArrayList<>();
-        List<Long> filmIds = filmDbStorage.getMostPopularFilms(limit);
-        for (Long id : filmIds) {
-            resultList.add(filmDbStorage.getOrCheckById(id));
-        }
+        List<Film> resultList = filmDbStorage.getByIds(filmDbStorage.getMostPopularFilms(count, offset,
+                genreId, mpaId, year));
         log.info("Список популярных фильмов создан");
         return resultList;
     }
+
+    //версия рейтинга: меняется при лайках, добавлении, удалении и правке фильмов
+    public long getPopularFilmsVersion() {
+        return filmDbStorage.getPopularFilmsVersion();
+    }
+
+    public List<Film> searchFilms(String query, int limit) {
+        log.info("Поступил запрос на поиск фильмов");
+        List<Film> resultList = filmDbStorage.getByIds(filmDbStorage.searchFilms(query, limit));
+        log.info("Найдено фильмов: {}", resultList.size());
+        return resultList;
+    }
+
+    public List<Suggestion> suggestFilms(String prefix, int limit) {
+        log.info("Поступил запрос на подсказки по названиям фильмов");
+        return filmDbStorage.suggestFilms(prefix, limit);
+    }
 }
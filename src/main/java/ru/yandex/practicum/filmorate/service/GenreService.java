@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
 
@@ -24,6 +25,10 @@ public class GenreService {
         return genreDbStorage.getOrCheckGenreById(id);
     }
 
+    public EntityVersion getGenresVersion() {
+        return genreDbStorage.getVersion();
+    }
+
     public Genre addGenre(Genre genre) {
         log.info("Поступил запрос на добавление жанра");
         return genreDbStorage.addGenre(genre);
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+//построчное чтение входного потока импорта; ошибка разбора строки не прерывает чтение остальных
+abstract class ImportRowReader<T> {
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    record Row<T>(long line, T value, String error) {
+    }
+
+    private ImportRowReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    static <T> ImportRowReader<T> ndjson(InputStream in, ObjectMapper objectMapper, Class<T> type) {
+        return new ImportRowReader<>(in) {
+            @Override
+            T parse(String line) throws JsonProcessingException {
+                return objectMapper.readValue(line, type);
+            }
+        };
+    }
+
+    //первая строка - заголовок с именами колонок
+    static <T> ImportRowReader<T> csv(InputStream in, Function<Map<String, String>, T> converter) {
+        return new ImportRowReader<>(in) {
+            private List<String> header;
+
+            @Override
+            T parse(String line) {
+                List<String> values = splitCsv(line);
+                if (header == null) {
+                    header = values.stream().map(String::trim).toList();
+                    return null;
+                }
+                if (values.size() != header.size()) {
+                    throw new ValidationException("Ожидалось колонок: " + header.size() + ", получено: "
+                            + values.size());
+                }
+                Map<String, String> columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i), values.get(i));
+                }
+                return converter.apply(columns);
+            }
+        };
+    }
+
+    abstract T parse(String line) throws Exception;
+
+    //следующая непустая строка, null - поток закончился
+    Row<T> next() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    T value = parse(line);
+                    if (value != null) {
+                        return new Row<>(lineNumber, value, null);
+                    }
+                } catch (JsonProcessingException e) {
+                    return new Row<>(lineNumber, null, "Не удалось разобрать строку: " + e.getOriginalMessage());
+                } catch (Exception e) {
+                    return new Row<>(lineNumber, null, "Не удалось разобрать строку: " + e.getMessage());
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //значения через запятую, кавычки экранируются удвоением; перевод строки внутри значения не поддерживается
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+}
@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.importStorage.ImportDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportService {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ImportDbStorage importDbStorage;
+    private final MPADbStorage mpaDbStorage;
+    private final GenreDbStorage genreDbStorage;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmSearchIndex searchIndex;
+    private final FilmTitleSuggester titleSuggester;
+    private final FriendGraph friendGraph;
+    private final UserLoginSuggester loginSuggester;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${filmorate.import.chunk-size:1000}")
+    private int chunkSize;
+
+    public ImportReport importFilms(InputStream in, ImportFormat format) {
+        log.info("Поступил запрос на импорт фильмов");
+        ImportRowReader<Film> reader = format == ImportFormat.CSV
+                ? ImportRowReader.csv(in, ImportService::filmFromCsv)
+                : ImportRowReader.ndjson(in, objectMapper, Film.class);
+
+        ImportReport report = importRows(reader, this::checkFilm, importDbStorage::importFilms);
+        leaderboard.rebuild();
+        searchIndex.rebuild();
+        titleSuggester.rebuild();
+        return report;
+    }
+
+    public ImportReport importUsers(InputStream in, ImportFormat format) {
+        log.info("Поступил запрос на импорт пользователей");
+        ImportRowReader<User> reader = format == ImportFormat.CSV
+                ? ImportRowReader.csv(in, ImportService::userFromCsv)
+                : ImportRowReader.ndjson(in, objectMapper, User.class);
+
+        ImportReport report = importRows(reader, this::checkUser, importDbStorage::importUsers);
+        loginSuggester.rebuild();
+        return report;
+    }
+
+    public ImportReport importLikes(InputStream in, ImportFormat format) {
+        log.info("Поступил запрос на импорт лайков");
+        ImportRowReader<Like> reader = format == ImportFormat.CSV
+                ? ImportRowReader.csv(in, columns -> new Like(parseId(columns.get("film_id")),
+                        parseId(columns.get("user_id"))))
+                : ImportRowReader.ndjson(in, objectMapper, Like.class);
+
+        ImportReport report = importRows(reader, like -> {
+            if (like.filmId() == null || like.userId() == null) {
+                throw new ValidationException("Не указан фильм или пользователь");
+            }
+        }, importDbStorage::importLikes);
+        leaderboard.rebuild();
+        likeMatrix.rebuild();
+        titleSuggester.rebuild();
+        return report;
+    }
+
+    public ImportReport importFriendships(InputStream in, ImportFormat format) {
+        log.info("Поступил запрос на импорт дружб");
+        ImportRowReader<Friendship> reader = format == ImportFormat.CSV
+                ? ImportRowReader.csv(in, columns -> new Friendship(parseId(columns.get("user_id")),
+                        parseId(columns.get("friend_id")), columns.get("status")))
+                : ImportRowReader.ndjson(in, objectMapper, Friendship.class);
+
+        ImportReport report = importRows(reader, friendship -> {
+            if (friendship.userId() == null || friendship.friendId() == null) {
+                throw new ValidationException("Не указан пользователь или друг");
+            }
+            if (friendship.userId().equals(friendship.friendId())) {
+                throw new ValidationException("Пользователь не может добавить в друзья самого себя");
+            }
+        }, importDbStorage::importFriendships);
+        friendGraph.rebuild();
+        return report;
+    }
+
+    private void checkFilm(Film film) {
+        checkConstraints(film);
+        if (film.getMpa().getId() == null) {
+            throw new ValidationException("Не указан id рейтинга MPA");
+        }
+        mpaDbStorage.getOrCheckMpaById(film.getMpa().getId());
+        if (film.getGenres() == null) {
+            film.setGenres(new ArrayList<>());
+        }
+        genreDbStorage.getOrCheckGenresByIds(film.getGenres().stream().map(Genre::getId).toList());
+    }
+
+    private void checkUser(User user) {
+        checkConstraints(user);
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+    }
+
+    //те же ограничения, что и при создании через POST /films и POST /users
+    private void checkConstraints(Object value) {
+        Set<ConstraintViolation<Object>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    private <T> ImportReport importRows(ImportRowReader<T> reader, RowCheck<T> check,
+                                        Function<List<T>, Integer> writer) {
+        ImportProgress progress = new ImportProgress();
+        List<ImportRowReader.Row<T>> chunk = new ArrayList<>(chunkSize);
+
+        ImportRowReader.Row<T> row;
+        while ((row = reader.next()) != null) {
+            progress.rowsRead++;
+            if (row.error() != null) {
+                progress.fail(row.line(), row.error());
+                continue;
+            }
+            try {
+                check.check(row.value());
+            } catch (ValidationException | EntityNotFoundException e) {
+                progress.fail(row.line(), e.getMessage());
+                continue;
+            }
+
+            chunk.add(row);
+            if (chunk.size() >= chunkSize) {
+                writeChunk(chunk, writer, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, writer, progress);
+        }
+
+        log.info("Импорт завершен: прочитано {}, записано {}, с ошибками {}",
+                progress.rowsRead, progress.rowsImported, progress.rowsFailed);
+        return new ImportReport(progress.rowsRead, progress.rowsImported, progress.rowsFailed, progress.errors);
+    }
+
+    //пакет пишется одной транзакцией; если она откатилась, строки пакета пишутся по одной, чтобы найти виновные
+    private <T> void writeChunk(List<ImportRowReader.Row<T>> chunk, Function<List<T>, Integer> writer,
+                                ImportProgress progress) {
+        try {
+            progress.rowsImported += writer.apply(chunk.stream().map(ImportRowReader.Row::value).toList());
+        } catch (DataAccessException e) {
+            log.warn("Пакет из {} строк не записан, запись по одной строке", chunk.size());
+            for (ImportRowReader.Row<T> row : chunk) {
+                try {
+                    progress.rowsImported += writer.apply(List.of(row.value()));
+                } catch (DataAccessException rowException) {
+                    //текст ошибки драйвера без повторения SQL-запроса
+                    progress.fail(row.line(), rowException.getMostSpecificCause().getMessage().lines()
+                            .findFirst().orElse(""));
+                }
+            }
+        }
+    }
+
+    private static Film filmFromCsv(Map<String, String> columns) {
+        Film film = new Film();
+        film.setId(parseOptionalId(columns.get("id")));
+        film.setName(columns.get("name"));
+        film.setDescription(columns.get("description"));
+        film.setReleaseDate(LocalDate.parse(columns.get("release_date")));
+        film.setDuration(Long.parseLong(columns.get("duration")));
+
+        MPA mpa = new MPA();
+        mpa.setId(parseId(columns.get("mpa_id")));
+        film.setMpa(mpa);
+
+        String genreIds = columns.getOrDefault("genre_ids", "");
+        film.setGenres(new ArrayList<>(Arrays.stream(genreIds.split(";"))
+                .filter(id -> !id.isBlank())
+                .map(id -> {
+                    Genre genre = new Genre();
+                    genre.setId(parseId(id));
+                    return genre;
+                })
+                .toList()));
+        return film;
+    }
+
+    private static User userFromCsv(Map<String, String> columns) {
+        User user = new User();
+        user.setId(parseOptionalId(columns.get("id")));
+        user.setEmail(columns.get("email"));
+        user.setLogin(columns.get("login"));
+        user.setName(columns.get("name"));
+        user.setBirthday(LocalDate.parse(columns.get("birthday")));
+        return user;
+    }
+
+    private static Long parseOptionalId(String value) {
+        return value == null || value.isBlank() ? null : parseId(value);
+    }
+
+    private static Long parseId(String value) {
+        if (value == null) {
+            throw new ValidationException("Не заполнена колонка с id");
+        }
+        return Long.parseLong(value.trim());
+    }
+
+    @FunctionalInterface
+    private interface RowCheck<T> {
+        void check(T value);
+    }
+
+    private static class ImportProgress {
+        private long rowsRead;
+        private long rowsImported;
+        private long rowsFailed;
+        private final List<ImportError> errors = new ArrayList<>();
+
+        void fail(long line, String message) {
+            rowsFailed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) { //отчет не должен расти вместе с размером файла
+                errors.add(new ImportError(line, message));
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
 
@@ -24,6 +25,10 @@ public class MPAService {
         return mpaDbStorage.getOrCheckMpaById(id);
     }
 
+    public EntityVersion getMpaVersion() {
+        return mpaDbStorage.getVersion();
+    }
+
     public MPA addMpa(MPA mpa) {
         log.info("Поступил запрос на добавление возрастного рейтинга");
         return mpaDbStorage.addMpa(mpa);
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+//курсор - непрозрачная для клиента строка вида base64("films:42"), где 42 - последний отданный id
+final class PageCursors {
+    static final int MAX_LIMIT = 1000;
+
+    private PageCursors() {
+    }
+
+    static long decode(String scope, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(scope + ":")) {
+                throw new ValidationException("Курсор относится к другому списку");
+            }
+            return Long.parseLong(decoded.substring(scope.length() + 1));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор");
+        }
+    }
+
+    static String encode(String scope, long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((scope + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_LIMIT);
+        }
+    }
+
+    static void checkIdsCount(List<Long> ids) {
+        if (ids.size() > MAX_LIMIT) {
+            throw new ValidationException("За один запрос можно получить не больше " + MAX_LIMIT + " записей");
+        }
+    }
+
+    //rows запрошены с запасом в одну строку, по ней определяется наличие следующей страницы
+    static <T> CursorPage<T> toPage(String scope, List<T> rows, int limit, Function<T, Long> idGetter) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(items, encode(scope, idGetter.apply(items.getLast())));
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserStorage;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecommendationService {
+    private final LikeMatrix likeMatrix;
+    private final FilmStorage filmDbStorage;
+    private final UserStorage userDbStorage;
+
+    public List<Film> getRecommendations(Long userId, int count) {
+        log.info("Поступил запрос на получение рекомендаций для пользователя");
+        userDbStorage.getOrCheckById(userId);
+        List<Long> filmIds = likeMatrix.recommend(userId, count);
+        log.info("Подобрано рекомендаций: {}", filmIds.size());
+        return filmDbStorage.getByIds(filmIds);
+    }
+}
@@ -3,17 +3,22 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.ArrayList;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    private static final String USERS_CURSOR_SCOPE = "users";
+
     private final UserDbStorage userDbStorage;
 
     public List<User> getAllUsers() {
@@ -21,6 +26,32 @@ public class UserService {
         return userDbStorage.getAll();
     }
 
+    public CursorPage<User> getUsersPage(String after, int limit) {
+        log.info("Поступил запрос на получение страницы пользователей");
+        PageCursors.checkLimit(limit);
+        long afterId = PageCursors.decode(USERS_CURSOR_SCOPE, after);
+        return PageCursors.toPage(USERS_CURSOR_SCOPE, userDbStorage.getPage(afterId, limit + 1), limit, User::getId);
+    }
+
+    public List<User> getUsersByIds(List<Long> ids) {
+        log.info("Поступил запрос на получение пользователей по списку id");
+        PageCursors.checkIdsCount(ids);
+        return userDbStorage.getByIds(ids);
+    }
+
+    //список друзей берется из графа друзей, в кэше пользователей его нет
+    public User getUserById(Long id) {
+        log.info("Поступил запрос на получение пользователя по id");
+        User user = userDbStorage.getOrCheckById(id);
+        user.setFriendSet(Arrays.stream(userDbStorage.getFriendIds(id)).boxed().collect(Collectors.toSet()));
+        return user;
+    }
+
+    public EntityVersion getUserVersion(Long id) {
+        log.info("Поступил запрос на получение версии пользователя");
+        return userDbStorage.getOrCheckVersion(id);
+    }
+
     public User createUser(User user) {
         log.info("Поступил запрос на создание нового пользователя");
         if (user.getName() == null || user.getName().isBlank()) {
@@ -37,61 +68,23 @@ public class UserService {
     }
 
     public User addFriend(Long userId, Long friendId) {
-        log.info("Проверка первого пользователя на null");
-        userDbStorage.getOrCheckById(userId);
-
-        log.info("Проверка второго пользователя на null");
-        userDbStorage.getOrCheckById(friendId);
-
-        userDbStorage.addFriend(userId, friendId);
-        friendshipStatusCheck(userId, friendId);
-
+        log.info("Поступил запрос на добавление друга");
+        User user = userDbStorage.addFriend(userId, friendId);
         log.info("Друг был добавлен");
-
-        User user = userDbStorage.getOrCheckById(userId);
-        user.setFriendSet(userDbStorage.getFriendsSet(userId));
         return user;
     }
 
     public User deleteFriend(Long userId, Long friendId) {
-        log.info("Проверка первого пользователя на null");
-        User user = userDbStorage.getOrCheckById(userId);
-
-        log.info("Проверка второго пользователя на null");
-        userDbStorage.getOrCheckById(friendId);
-
-        if (!userDbStorage.getFriendsSet(userId).contains(friendId)) { //проверка на случай если некого удалять
-            user.setFriendSet(userDbStorage.getFriendsSet(userId));
-            return user;
-        }
-
-        userDbStorage.deleteFriend(userId, friendId);
-        if (userDbStorage.statusCount(friendId, userId) > 0) { //проверка на случай если наш "друг" нас так и не добавил
-            userDbStorage.applyStatusPending(userId, friendId);
-        }
-
+        log.info("Поступил запрос на удаление друга");
+        User user = userDbStorage.deleteFriend(userId, friendId);
         log.info("Друг был удален");
-        user.setFriendSet(userDbStorage.getFriendsSet(userId));
         return user;
     }
 
-    private void friendshipStatusCheck(Long userId, Long friendId) {
-        log.info("Проверка дружбы между пользователями для установления статуса");
-        boolean isMutual = userDbStorage.statusCount(userId, friendId) > 0
-                && userDbStorage.statusCount(friendId, userId) > 0;
-
-        if (isMutual) {
-            userDbStorage.applyStatusApproved(userId, friendId);
-            userDbStorage.applyStatusApproved(friendId, userId);
-        }
-    }
-
     public List<User> showAllFriends(Long userId) {
         log.info("Поступил запрос на получение списка всех друзей пользователя");
         userDbStorage.getOrCheckById(userId);
-        return userDbStorage.getFriendsSet(userId).stream()
-                .map(userDbStorage::getOrCheckById)
-                .collect(Collectors.toList());
+        return userDbStorage.getByIds(toIdList(userDbStorage.getFriendIds(userId)));
     }
 
     public List<User> showAllCommonFriends(Long userId, Long friendId) {
@@ -101,11 +94,17 @@ public class UserService {
         log.info("Проверка второго пользователя на null");
         userDbStorage.getOrCheckById(friendId);
 
-        List<User> resultList = new ArrayList<>();
-        for (Long id : userDbStorage.getCommonFriends(userId, friendId)) {
-            resultList.add(userDbStorage.getOrCheckById(id));
-        }
+        List<User> resultList = userDbStorage.getByIds(toIdList(userDbStorage.getCommonFriends(userId, friendId)));
         log.info("Список общих друзей 2 пользователей получен");
         return resultList;
     }
+
+    private static List<Long> toIdList(long[] ids) {
+        return Arrays.stream(ids).boxed().toList();
+    }
+
+    public List<Suggestion> suggestUsers(String prefix, int limit) {
+        log.info("Поступил запрос на подсказки по логинам пользователей");
+        return userDbStorage.suggestUsers(prefix, limit);
+    }
 }
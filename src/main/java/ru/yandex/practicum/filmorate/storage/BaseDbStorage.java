@@ -7,16 +7,28 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exceptions.DbDeletionException;
 import ru.yandex.practicum.filmorate.exceptions.InternalDatabaseException;
 import ru.yandex.practicum.filmorate.exceptions.InternalServerException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 
 @RequiredArgsConstructor
 public class BaseDbStorage<T> {
+    protected static final int IDS_CHUNK_SIZE = 500;
+
     protected final JdbcTemplate jdbc;
     protected final RowMapper<T> mapper;
     protected final NamedParameterJdbcTemplate namedJdbc;
@@ -36,10 +48,54 @@ public class BaseDbStorage<T> {
         }
     }
 
+    //query должен вернуть колонки version и updated_at одной строки
+    protected Optional<EntityVersion> findVersion(String query, Object... params) {
+        return jdbc.query(query, (rs, rowNum) -> new EntityVersion(rs.getLong("version"),
+                        rs.getObject("updated_at", OffsetDateTime.class).toInstant()), params).stream()
+                .findFirst();
+    }
+
     protected List<T> findMany(String query, Object... params) {
         return jdbc.query(query, mapper, params);
     }
 
+    //query с параметром :ids выполняется порциями; результат в порядке переданных id без повторов, ненайденные пропускаются
+    protected List<T> findManyByIds(String query, Collection<Long> ids, Function<T, Long> idGetter) {
+        Map<Long, T> found = new HashMap<>();
+        for (List<Long> chunk : chunks(ids)) {
+            namedJdbc.query(query, Map.of("ids", chunk), mapper)
+                    .forEach(entity -> found.put(idGetter.apply(entity), entity));
+        }
+        return new LinkedHashSet<>(ids).stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    protected static List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> distinctIds = List.copyOf(new LinkedHashSet<>(ids));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += IDS_CHUNK_SIZE) {
+            chunks.add(distinctIds.subList(from, Math.min(from + IDS_CHUNK_SIZE, distinctIds.size())));
+        }
+        return chunks;
+    }
+
+    //структуры в памяти (рейтинг, индексы, граф друзей) меняются только после коммита:
+    //при откате транзакции они разошлись бы с базой до следующей перестройки
+    protected static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     protected void delete(String query, Object... params) {
         int rowsDeleted = jdbc.update(query, params);
         if (rowsDeleted < 1) throw new DbDeletionException("Не удалось удалить данные");
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//плотная нумерация id из базы (BIGINT) для битовых множеств RoaringBitmap, которые хранят только int:
+//каждому новому id выдается следующий номер, номера не переиспользуются до пересборки владельца.
+//без собственной блокировки - владелец обращается к нему под своей
+public class DenseIdIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private final Map<Long, Integer> indexById = new HashMap<>();
+    private long[] idByIndex = new long[MIN_CAPACITY];
+    private int size;
+
+    //номер id, при первом обращении выдается новый
+    public int indexOf(long id) {
+        Integer index = indexById.get(id);
+        if (index != null) {
+            return index;
+        }
+        if (size == idByIndex.length) {
+            idByIndex = Arrays.copyOf(idByIndex, size * 2);
+        }
+        idByIndex[size] = id;
+        indexById.put(id, size);
+        return size++;
+    }
+
+    //номер уже известного id или -1
+    public int find(long id) {
+        Integer index = indexById.get(id);
+        return index != null ? index : -1;
+    }
+
+    public long idAt(int index) {
+        return idByIndex[index];
+    }
+
+    //граница номеров: все выданные номера меньше нее
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+//кэш сущностей по id перед getOrCheckById: размер ограничен суммарным весом записей, вытеснение W-TinyLFU
+//(Caffeine), наружу отдаются копии, чтобы правка полученного объекта не меняла закэшированный
+public abstract class EntityCache<T> implements MeterBinder {
+    private final String name;
+    private final Cache<Long, T> cache;
+
+    protected EntityCache(String name, long maxWeight) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, T entity) -> weigh(entity))
+                .recordStats()
+                .build();
+    }
+
+    //примерный размер сущности в байтах
+    protected abstract int weigh(T entity);
+
+    protected abstract T copy(T entity);
+
+    //чтение насквозь; отсутствие сущности (исключение загрузчика) не кэшируется.
+    //внутри пишущей транзакции кэш не пополняется: прочитанная строка может оказаться своей же
+    //незакоммиченной записью или откатиться
+    public T get(Long id, Function<Long, T> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            T cached = cache.getIfPresent(id);
+            return cached != null ? copy(cached) : loader.apply(id);
+        }
+        return copy(cache.get(id, loader));
+    }
+
+    //сброс сразу и повторно после завершения транзакции: параллельное чтение между изменением
+    //и коммитом могло вернуть в кэш старую строку
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll(Collection<Long> ids) {
+        ids.forEach(this::invalidate);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    //cache.gets (hit/miss), cache.evictions, cache.eviction.weight, cache.load.duration и другие с тегом cache
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+}
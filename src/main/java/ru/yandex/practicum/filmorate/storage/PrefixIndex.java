@@ -0,0 +1,299 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//строки в нижнем регистре лежат в отсортированном массиве, поэтому все строки с общим префиксом идут подряд;
+//дерево отрезков над весами хранит в каждом узле позицию самой тяжелой строки своего отрезка,
+//так что лучшие k строк любого префикса достаются за O(k log n) без обхода всего диапазона
+public class PrefixIndex {
+    private static final int MIN_CAPACITY = 16;
+    private static final long OBJECT_HEADER_BYTES = 16;
+    private static final long MAP_ENTRY_BYTES = 48; //узел HashMap и Long ключа
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> keyById = new HashMap<>();
+    private String[] keys = new String[MIN_CAPACITY];
+    private String[] texts = new String[MIN_CAPACITY];
+    private long[] ids = new long[MIN_CAPACITY];
+    private long[] weights = new long[MIN_CAPACITY];
+    private int[] tree = new int[2 * MIN_CAPACITY];
+    private int size;
+
+    public record Entry(long id, String text, long weight) {
+    }
+
+    public void load(List<Entry> entries) {
+        List<Entry> sorted = entries.stream()
+                .filter(entry -> entry.text() != null)
+                .sorted(Comparator.comparing((Entry entry) -> normalize(entry.text())).thenComparingLong(Entry::id))
+                .toList();
+        lock.writeLock().lock();
+        try {
+            keyById.clear();
+            allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, sorted.size())) * 2));
+            size = 0;
+            for (Entry entry : sorted) {
+                String key = normalize(entry.text());
+                keys[size] = key;
+                texts[size] = key.equals(entry.text()) ? key : entry.text();
+                ids[size] = entry.id();
+                weights[size] = entry.weight();
+                keyById.put(entry.id(), key);
+                size++;
+            }
+            rebuildTree();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //вставка сдвигает хвост массивов и перестраивает дерево за O(n): новые строки редки по сравнению с запросами
+    public void put(long id, String text, long weight) {
+        if (text == null) {
+            remove(id);
+            return;
+        }
+        String key = normalize(text);
+        lock.writeLock().lock();
+        try {
+            removeEntry(id);
+            if (size == keys.length) {
+                grow();
+            }
+            int position = -find(key, id) - 1;
+            int tail = size - position;
+            System.arraycopy(keys, position, keys, position + 1, tail);
+            System.arraycopy(texts, position, texts, position + 1, tail);
+            System.arraycopy(ids, position, ids, position + 1, tail);
+            System.arraycopy(weights, position, weights, position + 1, tail);
+            keys[position] = key;
+            texts[position] = key.equals(text) ? key : text;
+            ids[position] = id;
+            weights[position] = weight;
+            keyById.put(id, key);
+            size++;
+            rebuildTree();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (removeEntry(id)) {
+                rebuildTree();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //смена веса не двигает строку, пересчитываются только предки листа
+    public void addWeight(long id, long delta) {
+        lock.writeLock().lock();
+        try {
+            String key = keyById.get(id);
+            if (key == null) {
+                return;
+            }
+            int position = find(key, id);
+            weights[position] = Math.max(0, weights[position] + delta);
+            for (int node = (keys.length + position) >> 1; node >= 1; node >>= 1) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //больше вес - выше, при равенстве выше строка, раньше идущая по алфавиту
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        lock.readLock().lock();
+        try {
+            int from = lowerBound(key);
+            int to = lowerBound(key + Character.MAX_VALUE);
+            List<Suggestion> result = new ArrayList<>(Math.min(limit, to - from));
+            if (from == to) {
+                return result;
+            }
+            //очередь отрезков, упорядоченная по лучшей строке каждого отрезка: {from, to, лучшая позиция}
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((first, second) -> first[2] == second[2] ? 0
+                    : better(first[2], second[2]) == first[2] ? -1 : 1);
+            ranges.add(new int[]{from, to, query(from, to)});
+            while (result.size() < limit && !ranges.isEmpty()) {
+                int[] range = ranges.poll();
+                int best = range[2];
+                result.add(new Suggestion(ids[best], texts[best]));
+                if (range[0] < best) {
+                    ranges.add(new int[]{range[0], best, query(range[0], best)});
+                }
+                if (best + 1 < range[1]) {
+                    ranges.add(new int[]{best + 1, range[1], query(best + 1, range[1])});
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //оценка занимаемой памяти: массивы, строки (compact strings) и карта id -> строка; ссылки по 4 байта
+    public long estimateMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 2 * arrayBytes(keys.length, 4) + 2 * arrayBytes(ids.length, 8) + arrayBytes(tree.length, 4);
+            for (int i = 0; i < size; i++) {
+                bytes += stringBytes(keys[i]);
+                if (texts[i] != keys[i]) {
+                    bytes += stringBytes(texts[i]);
+                }
+            }
+            return bytes + (long) keyById.size() * MAP_ENTRY_BYTES + arrayBytes(keyById.size() * 2, 4);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.strip().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private boolean removeEntry(long id) {
+        String key = keyById.remove(id);
+        if (key == null) {
+            return false;
+        }
+        int position = find(key, id);
+        int tail = size - position - 1;
+        System.arraycopy(keys, position + 1, keys, position, tail);
+        System.arraycopy(texts, position + 1, texts, position, tail);
+        System.arraycopy(ids, position + 1, ids, position, tail);
+        System.arraycopy(weights, position + 1, weights, position, tail);
+        size--;
+        keys[size] = null;
+        texts[size] = null;
+        return true;
+    }
+
+    //позиция строки или -(позиция вставки) - 1, порядок - по строке, затем по id
+    private int find(String key, long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = keys[middle].compareTo(key);
+            if (compared == 0) {
+                compared = Long.compare(ids[middle], id);
+            }
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        String[] oldTexts = texts;
+        long[] oldIds = ids;
+        long[] oldWeights = weights;
+        allocate(keys.length * 2);
+        System.arraycopy(oldKeys, 0, keys, 0, size);
+        System.arraycopy(oldTexts, 0, texts, 0, size);
+        System.arraycopy(oldIds, 0, ids, 0, size);
+        System.arraycopy(oldWeights, 0, weights, 0, size);
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        texts = new String[capacity];
+        ids = new long[capacity];
+        weights = new long[capacity];
+        tree = new int[2 * capacity];
+    }
+
+    //листья дерева - позиции массива, внутренние узлы - лучшая позиция поддерева, -1 для пустых
+    private void rebuildTree() {
+        int capacity = keys.length;
+        for (int i = 0; i < capacity; i++) {
+            tree[capacity + i] = i < size ? i : -1;
+        }
+        for (int node = capacity - 1; node >= 1; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    private int query(int from, int to) {
+        int best = -1;
+        for (int left = from + keys.length, right = to + keys.length; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                best = better(best, tree[left++]);
+            }
+            if ((right & 1) == 1) {
+                best = better(best, tree[--right]);
+            }
+        }
+        return best;
+    }
+
+    private int better(int first, int second) {
+        if (first < 0) {
+            return second;
+        }
+        if (second < 0) {
+            return first;
+        }
+        if (weights[first] != weights[second]) {
+            return weights[first] > weights[second] ? first : second;
+        }
+        return Math.min(first, second);
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return OBJECT_HEADER_BYTES + (long) length * elementBytes;
+    }
+
+    private static long stringBytes(String value) {
+        boolean latin1 = value.chars().allMatch(ch -> ch < 256);
+        return 24 + arrayBytes(value.length(), latin1 ? 1 : 2);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.storage.exportStorage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.metrics.CountingJdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+//выгрузка таблиц целиком: строки читаются однонаправленным курсором и сразу передаются дальше
+@Slf4j
+@Repository
+public class ExportDbStorage {
+    private static final String EXPORT_FILMS = "SELECT f.*, m.name AS mpa_name, g.id AS genre_id," +
+            " g.name AS genre_name FROM films f LEFT JOIN mpa m ON f.mpa_id = m.id" +
+            " LEFT JOIN films_genres fg ON f.id = fg.film_id LEFT JOIN genres g ON fg.genre_id = g.id" +
+            " WHERE f.id > ? ORDER BY f.id, g.id";
+    private static final String EXPORT_USERS = "SELECT * FROM users WHERE id > ? ORDER BY id";
+    //продолжение после пары ключей (a, b) > (?, ?); первое условие дает диапазон по первичному ключу
+    private static final String EXPORT_LIKES = "SELECT film_id, user_id FROM likes" +
+            " WHERE film_id >= ? AND (film_id > ? OR user_id > ?) ORDER BY film_id, user_id";
+    private static final String EXPORT_FRIENDSHIPS = "SELECT user_id, friend_id, status FROM friendships" +
+            " WHERE user_id >= ? AND (user_id > ? OR friend_id > ?) ORDER BY user_id, friend_id";
+
+    private final JdbcTemplate jdbc;
+    private final RowMapper<Film> filmMapper;
+    private final RowMapper<User> userMapper;
+
+    public ExportDbStorage(DataSource dataSource, RowMapper<Film> filmMapper, RowMapper<User> userMapper,
+                           @Value("${filmorate.export.fetch-size:1000}") int fetchSize) {
+        this.jdbc = new CountingJdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(fetchSize);
+        this.filmMapper = filmMapper;
+        this.userMapper = userMapper;
+    }
+
+    public void exportFilms(long afterId, Consumer<? super Film> consumer) {
+        log.info("Выгрузка фильмов начиная с id {}", afterId);
+        FilmGroupingHandler handler = new FilmGroupingHandler(consumer);
+        jdbc.query(EXPORT_FILMS, handler, afterId);
+        handler.flush();
+    }
+
+    public void exportUsers(long afterId, Consumer<? super User> consumer) {
+        log.info("Выгрузка пользователей начиная с id {}", afterId);
+        jdbc.query(EXPORT_USERS, rs -> {
+            consumer.accept(userMapper.mapRow(rs, rs.getRow()));
+        }, afterId);
+    }
+
+    public void exportLikes(long afterFilmId, long afterUserId, Consumer<? super Like> consumer) {
+        log.info("Выгрузка лайков после фильма {} и пользователя {}", afterFilmId, afterUserId);
+        jdbc.query(EXPORT_LIKES, rs -> {
+            consumer.accept(new Like(rs.getLong("film_id"), rs.getLong("user_id")));
+        }, afterFilmId, afterFilmId, afterUserId);
+    }
+
+    public void exportFriendships(long afterUserId, long afterFriendId, Consumer<? super Friendship> consumer) {
+        log.info("Выгрузка дружб после пользователя {} и друга {}", afterUserId, afterFriendId);
+        jdbc.query(EXPORT_FRIENDSHIPS, rs -> {
+            consumer.accept(new Friendship(rs.getLong("user_id"), rs.getLong("friend_id"), rs.getString("status")));
+        }, afterUserId, afterUserId, afterFriendId);
+    }
+
+    //строки одного фильма идут подряд (по строке на жанр), фильм отдается, когда начинается следующий
+    private class FilmGroupingHandler implements RowCallbackHandler {
+        private final Consumer<? super Film> consumer;
+        private Film current;
+
+        FilmGroupingHandler(Consumer<? super Film> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long filmId = rs.getLong("id");
+            if (current == null || current.getId() != filmId) {
+                flush();
+                current = filmMapper.mapRow(rs, rs.getRow());
+            }
+
+            long genreId = rs.getLong("genre_id");
+            if (!rs.wasNull()) {
+                Genre genre = new Genre();
+                genre.setId(genreId);
+                genre.setName(rs.getString("genre_name"));
+                current.getGenres().add(genre);
+            }
+        }
+
+        void flush() {
+            if (current != null) {
+                consumer.accept(current);
+                current = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+
+import java.util.ArrayList;
+
+//фильмы с жанрами и рейтингом; сбрасывается при изменении фильма, его жанров и счетчика лайков
+@Component
+public class FilmCache extends EntityCache<Film> {
+    public FilmCache(@Value("${filmorate.entity-cache.films.max-weight:16777216}") long maxWeight) {
+        super("films", maxWeight);
+    }
+
+    @Override
+    protected int weigh(Film film) {
+        return 160 + 2 * (length(film.getName()) + length(film.getDescription())) + 48 * film.getGenres().size();
+    }
+
+    @Override
+    protected Film copy(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setGenres(new ArrayList<>(film.getGenres().stream().map(GenreDbStorage::copy).toList()));
+        if (film.getMpa() != null) {
+            copy.setMpa(MPADbStorage.copy(film.getMpa()));
+        }
+        copy.setLikesCount(film.getLikesCount());
+        return copy;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
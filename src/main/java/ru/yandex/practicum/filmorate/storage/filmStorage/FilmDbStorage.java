@@ -1,58 +1,114 @@
 package ru.yandex.practicum.filmorate.storage.filmStorage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.DbDeletionException;
 import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeState;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
 import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.Optional;
+import java.util.LinkedHashSet;
 
 @Slf4j
 @Repository
 public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
     private final MPADbStorage mpaDbStorage;
     private final GenreDbStorage genreDbStorage;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmSearchIndex searchIndex;
+    private final FilmTitleSuggester titleSuggester;
+    private final FilmCache filmCache;
 
-    private static final String GET_FILMS = "SELECT * FROM films";
-    private static final String GET_FILM_BY_ID = "SELECT * FROM films WHERE id = ?";
+    private static final String GET_FILMS = "SELECT f.*, m.name AS mpa_name FROM films f" +
+            " LEFT JOIN mpa m ON f.mpa_id = m.id ORDER BY f.id";
+    private static final String GET_FILM_BY_ID = "SELECT f.*, m.name AS mpa_name FROM films f" +
+            " LEFT JOIN mpa m ON f.mpa_id = m.id WHERE f.id = ?";
+    private static final String GET_FILMS_PAGE = "SELECT f.*, m.name AS mpa_name FROM films f" +
+            " LEFT JOIN mpa m ON f.mpa_id = m.id WHERE f.id > ? ORDER BY f.id LIMIT ?";
+    private static final String GET_FILMS_BY_IDS = "SELECT f.*, m.name AS mpa_name FROM films f" +
+            " LEFT JOIN mpa m ON f.mpa_id = m.id WHERE f.id IN (:ids)";
     private static final String DELETE_FILM_BY_ID = "DELETE FROM films WHERE id = ?";
     private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration, mpa_id)" +
             " VALUES(:name, :description, :releaseDate, :duration, :mpaId)";
     private static final String UPDATE_BY_ID = "UPDATE films SET name = :name, description = :description," +
-            " release_date = :releaseDate, duration = :duration WHERE id = :id";
+            " release_date = :releaseDate, duration = :duration, version = version + 1," +
+            " updated_at = CURRENT_TIMESTAMP WHERE id = :id";
+    private static final String GET_FILM_VERSION = "SELECT version, updated_at FROM films WHERE id = ?";
 
-    private static final String GET_MOST_POPULAR = "SELECT f.id FROM films f " +
-            "LEFT JOIN likes l ON f.id = l.film_id GROUP BY f.id ORDER BY COUNT(l.user_id) DESC LIMIT ?";
+    private static final String GET_FILM_GENRE_IDS = "SELECT genre_id FROM films_genres WHERE film_id = ?";
+    private static final String INSERT_FILM_GENRE = "INSERT INTO films_genres (film_id, genre_id) VALUES (?, ?)";
+    private static final String DELETE_FILM_GENRE = "DELETE FROM films_genres WHERE film_id = ? AND genre_id = ?";
 
-    private static final String ADD_LIKE = "INSERT INTO likes (user_id, film_id) VALUES(?, ?)";
+    private static final String ADD_LIKE = "INSERT INTO likes (user_id, film_id) SELECT ?, ? WHERE NOT EXISTS" +
+            " (SELECT 1 FROM likes WHERE user_id = ? AND film_id = ?)";
     private static final String DELETE_LIKE = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
     private static final String GET_LIKES_SET = "SELECT COUNT(*) FROM likes WHERE film_id = ?";
+    //счетчик лайков входит в представление фильма, поэтому его изменение поднимает версию строки
+    private static final String CHANGE_LIKES_COUNT = "UPDATE films SET likes_count = likes_count + ?," +
+            " version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    private static final String CHANGE_LIKES_COUNT_RETURNING = "SELECT likes_count FROM FINAL TABLE" +
+            " (UPDATE films SET likes_count = likes_count + ?, version = version + 1," +
+            " updated_at = CURRENT_TIMESTAMP WHERE id = ?)";
+    private static final String GET_LIKES_COUNT = "SELECT likes_count FROM films WHERE id = ?";
+    private static final String GET_MISSING_LIKE_REASON = "SELECT" +
+            " EXISTS (SELECT 1 FROM films WHERE id = ?) AS film_exists," +
+            " EXISTS (SELECT 1 FROM users WHERE id = ?) AS user_exists";
 
-    private static final String GET_MPAID = "SELECT mpa_id FROM films WHERE id = ?";
+    //фильтры подставляются только заданные, каждый из них покрыт своим индексом
+    private static final String GET_POPULAR_FILMS = "SELECT f.id FROM films f WHERE ";
+    private static final String GENRE_FILTER = "f.id IN (SELECT fg.film_id FROM films_genres fg" +
+            " WHERE fg.genre_id = :genreId)";
+    private static final String MPA_FILTER = "f.mpa_id = :mpaId";
+    private static final String YEAR_FILTER = "f.release_date >= :yearStart AND f.release_date < :nextYearStart";
+    private static final String POPULAR_FILMS_ORDER = " ORDER BY f.likes_count DESC, f.id LIMIT :count OFFSET :offset";
+
+    private static final String GET_LIKES_COUNT_DRIFT = "SELECT f.id, f.likes_count, COUNT(l.user_id) AS actual" +
+            " FROM films f LEFT JOIN likes l ON f.id = l.film_id GROUP BY f.id, f.likes_count" +
+            " HAVING f.likes_count <> COUNT(l.user_id)";
+    private static final String RECOUNT_LIKES = "UPDATE films f SET likes_count =" +
+            " (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id), version = version + 1," +
+            " updated_at = CURRENT_TIMESTAMP WHERE f.id = ?";
 
     public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper,
-                         MPADbStorage mpaDbStorage, GenreDbStorage genreDbStorage) {
+                         MPADbStorage mpaDbStorage, GenreDbStorage genreDbStorage,
+                         FilmPopularityLeaderboard leaderboard, LikeMatrix likeMatrix,
+                         FilmSearchIndex searchIndex, FilmTitleSuggester titleSuggester, FilmCache filmCache) {
         super(jdbc, mapper);
         this.mpaDbStorage = mpaDbStorage;
         this.genreDbStorage = genreDbStorage;
+        this.leaderboard = leaderboard;
+        this.likeMatrix = likeMatrix;
+        this.searchIndex = searchIndex;
+        this.titleSuggester = titleSuggester;
+        this.filmCache = filmCache;
     }
 
     @Override
+    @Transactional
     public Film save(Film film) {
         log.info("Попытка сохранить фильм в базу данных");
         mpaDbStorage.getOrCheckMpaById(film.getMpa().getId());
+        List<Genre> genres = genreDbStorage.getOrCheckGenresByIds(genreIds(film));
 
         Map<String, Object> params = new HashMap<>();
         params.put("name", film.getName());
@@ -64,26 +120,16 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
         Film savedFilm = insertWithId(INSERT_FILM, GET_FILM_BY_ID, params).get();
 
         log.info("Обработка жанров для сохраняемого фильма");
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            Set<Long> uniqueIds = new HashSet<>(); //Отсортировываем дубликаты жанров (1,2,1)->(1,2)
-            List<Genre> uniqueGenres = film.getGenres().stream()
-                    .filter(g -> uniqueIds.add(g.getId()))
-                    .toList();
-
-            for (Genre genre : uniqueGenres) {
-                genreDbStorage.getOrCheckGenreById(genre.getId());
-            }
-
-            //привязка id фильма к его жанрам(id)
-            String filmGenresQuery = "INSERT INTO films_genres (film_id, genre_id) VALUES (?, ?)";
-            for (Genre genre : uniqueGenres) {
-                jdbc.update(filmGenresQuery, savedFilm.getId(), genre.getId());
-            }
-        } else {
-            film.setGenres(new ArrayList<>());
-        }
-
-        savedFilm.setMpa(mpaDbStorage.getOrCheckMpaById(film.getMpa().getId()));
+        linkGenres(savedFilm.getId(), genres.stream().map(Genre::getId).toList());
+        savedFilm.setGenres(new ArrayList<>(genres));
+        Long filmId = savedFilm.getId();
+        String name = savedFilm.getName();
+        String description = savedFilm.getDescription();
+        afterCommit(() -> {
+            leaderboard.addFilm(filmId);
+            searchIndex.putFilm(filmId, name, description);
+            titleSuggester.putFilm(filmId, name, 0);
+        });
 
         log.info("Попытка сохранить фильм успешна");
         return savedFilm;
@@ -91,38 +137,85 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
 
     @Override
     public Film getOrCheckById(Long id) {
+        return filmCache.get(id, this::loadFilm);
+    }
+
+    private Film loadFilm(Long id) {
         log.info("Попытка получить фильм из базы данных");
-        Optional<Film> film = findOne(GET_FILM_BY_ID, id);
+        Film film = findOne(GET_FILM_BY_ID, id)
+                .orElseThrow(() -> new EntityNotFoundException("Фильм с таким id не найден"));
 
-        if (film.isPresent()) {
-            Long mpaId = jdbc.queryForObject(GET_MPAID, Long.class, film.get().getId());
-            film.get().setMpa(mpaDbStorage.getOrCheckMpaById(mpaId));
-            return film.get();
-        } else {
-            throw new EntityNotFoundException("Фильм с таким id не найден");
-        }
+        film.setGenres(genreDbStorage.getFilmsGenres(id));
+        return film;
+    }
+
+    //одна строка по первичному ключу, без жанров и рейтинга
+    @Override
+    public EntityVersion getOrCheckVersion(Long id) {
+        log.info("Попытка получить версию фильма из базы данных");
+        return findVersion(GET_FILM_VERSION, id)
+                .orElseThrow(() -> new EntityNotFoundException("Фильм с таким id не найден"));
     }
 
     @Override
     public List<Film> getAll() {
         log.info("Попытка получить несколько фильмов из базы данных");
-        List<Film> resultWithMpa = findMany(GET_FILMS);
+        List<Film> films = findMany(GET_FILMS); //рейтинг подтягивается тем же запросом через JOIN
+        Map<Long, List<Genre>> genresByFilm = genreDbStorage.getAllFilmsGenres();
+
+        for (Film film : films) {
+            film.setGenres(genresByFilm.getOrDefault(film.getId(), new ArrayList<>()));
+        }
+
+        return films;
+    }
 
-        for (Film film : resultWithMpa) {
-            Long mpaId = jdbc.queryForObject(GET_MPAID, Long.class, film.getId());
-            film.setMpa(mpaDbStorage.getOrCheckMpaById(mpaId));
+    @Override
+    public List<Film> getByIds(Collection<Long> ids) {
+        log.info("Попытка получить фильмы по списку id из базы данных");
+        List<Film> films = findManyByIds(GET_FILMS_BY_IDS, ids, Film::getId);
+        Map<Long, List<Genre>> genresByFilm = new HashMap<>();
+        for (List<Long> chunk : chunks(films.stream().map(Film::getId).toList())) {
+            genresByFilm.putAll(genreDbStorage.getGenresByFilmIds(chunk));
+        }
+
+        for (Film film : films) {
+            film.setGenres(genresByFilm.getOrDefault(film.getId(), new ArrayList<>()));
         }
 
-        return resultWithMpa;
+        return films;
+    }
+
+    @Override
+    public List<Film> getPage(Long afterId, int limit) {
+        log.info("Попытка получить страницу фильмов из базы данных");
+        List<Film> films = findMany(GET_FILMS_PAGE, afterId, limit);
+        Map<Long, List<Genre>> genresByFilm = genreDbStorage.getGenresByFilmIds(films.stream()
+                .map(Film::getId)
+                .toList());
+
+        for (Film film : films) {
+            film.setGenres(genresByFilm.getOrDefault(film.getId(), new ArrayList<>()));
+        }
+
+        return films;
     }
 
     @Override
     public void deleteFilmById(Long id) {
         log.info("Попытка удалить фильм из базы данных");
         delete(DELETE_FILM_BY_ID, id);
+        filmCache.invalidate(id);
+        afterCommit(() -> {
+            leaderboard.removeFilm(id);
+            likeMatrix.removeFilm(id);
+            searchIndex.removeFilm(id);
+            titleSuggester.removeFilm(id);
+        });
     }
 
     @Override
+    @Transactional
     public Film updateById(Long id, Film film) {
         log.info("Попытка обновить фильм в базе данных");
         Map<String, Object> params = new HashMap<>();
@@ -131,24 +224,236 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
         params.put("releaseDate", film.getReleaseDate());
         params.put("duration", film.getDuration());
         params.put("id", id);
+        Set<Long> newGenreIds = genreIds(film);
+        genreDbStorage.getOrCheckGenresByIds(newGenreIds);
 
         update(UPDATE_BY_ID, params);
-        return getOrCheckById(id);
+
+        log.info("Обновление жанров фильма");
+        Set<Long> oldGenreIds = new HashSet<>(jdbc.queryForList(GET_FILM_GENRE_IDS, Long.class, id));
+        List<Long> removedIds = oldGenreIds.stream().filter(genreId -> !newGenreIds.contains(genreId)).toList();
+        List<Long> addedIds = newGenreIds.stream().filter(genreId -> !oldGenreIds.contains(genreId)).toList();
+        if (!removedIds.isEmpty()) {
+            jdbc.batchUpdate(DELETE_FILM_GENRE, filmGenreArgs(id, removedIds));
+        }
+        linkGenres(id, addedIds);
+        filmCache.invalidate(id);
+
+        Film updatedFilm = loadFilm(id); //мимо кэша: внутри транзакции он не пополняется
+        String name = updatedFilm.getName();
+        String description = updatedFilm.getDescription();
+        long likesCount = updatedFilm.getLikesCount();
+        afterCommit(() -> {
+            searchIndex.putFilm(id, name, description);
+            titleSuggester.putFilm(id, name, likesCount);
+        });
+        leaderboard.touch();
+        return updatedFilm;
+    }
+
+    private Set<Long> genreIds(Film film) {
+        Set<Long> ids = new LinkedHashSet<>(); //дубликаты жанров (1,2,1)->(1,2)
+        if (film.getGenres() != null) {
+            film.getGenres().forEach(genre -> ids.add(genre.getId()));
+        }
+        return ids;
     }
 
-    public List<Long> getMostPopularFilms(Long limit) {
-        log.info("Попытка получить список популярных фильмов из базы данных");
-        return jdbc.queryForList(GET_MOST_POPULAR, Long.class, limit);
+    private void linkGenres(Long filmId, List<Long> genreIds) {
+        if (!genreIds.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FILM_GENRE, filmGenreArgs(filmId, genreIds));
+        }
+    }
+
+    private List<Object[]> filmGenreArgs(Long filmId, List<Long> genreIds) {
+        return genreIds.stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList();
+    }
+
+    @Override
+    public List<Long> getMostPopularFilms(Long count, Long offset) {
+        log.info("Попытка получить список популярных фильмов из рейтинга");
+        return leaderboard.getTop(offset, count);
     }
 
-    public void addLike(Long filmId, Long userId) {
+    //без фильтров ответ дает рейтинг в памяти, с фильтрами - запрос по индексам и счетчику лайков
+    @Override
+    public List<Long> getMostPopularFilms(Long count, Long offset, Long genreId, Long mpaId, Integer year) {
+        if (genreId == null && mpaId == null && year == null) {
+            return getMostPopularFilms(count, offset);
+        }
+        log.info("Попытка получить список популярных фильмов с фильтрами из базы данных");
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        if (genreId != null) {
+            genreDbStorage.getOrCheckGenreById(genreId);
+            conditions.add(GENRE_FILTER);
+            params.put("genreId", genreId);
+        }
+        if (mpaId != null) {
+            mpaDbStorage.getOrCheckMpaById(mpaId);
+            conditions.add(MPA_FILTER);
+            params.put("mpaId", mpaId);
+        }
+        if (year != null) { //диапазон дат, а не EXTRACT(YEAR), иначе индекс по дате не используется
+            conditions.add(YEAR_FILTER);
+            params.put("yearStart", LocalDate.of(year, 1, 1));
+            params.put("nextYearStart", LocalDate.of(year + 1, 1, 1));
+        }
+        params.put("count", count);
+        params.put("offset", offset);
+
+        return namedJdbc.queryForList(GET_POPULAR_FILMS + String.join(" AND ", conditions) + POPULAR_FILMS_ORDER,
+                params, Long.class);
+    }
+
+    @Override
+    public long getPopularFilmsVersion() {
+        return leaderboard.getVersion();
+    }
+
+    @Override
+    public List<Long> searchFilms(String query, int limit) {
+        log.info("Попытка найти фильмы в поисковом индексе");
+        return searchIndex.search(query, limit);
+    }
+
+    @Override
+    public List<Suggestion> suggestFilms(String prefix, int limit) {
+        log.info("Попытка подобрать подсказки по названиям фильмов");
+        return titleSuggester.suggest(prefix, limit);
+    }
+
+    //одно условное выражение вместо проверок фильма и пользователя: отсутствие любого из них дает нарушение
+    //внешнего ключа, повторный лайк - ноль вставленных строк
+    @Override
+    @Transactional
+    public LikeState addLike(Long filmId, Long userId) {
         log.info("Попытка добавить лайк в базу данных");
-        jdbc.update(ADD_LIKE, userId, filmId);
+        int rowsInserted;
+        try {
+            rowsInserted = jdbc.update(ADD_LIKE, userId, filmId, userId, filmId);
+        } catch (DuplicateKeyException e) { //параллельный повторный лайк
+            rowsInserted = 0;
+        } catch (DataIntegrityViolationException e) {
+            checkLikeTargets(filmId, userId);
+            throw e;
+        }
+
+        if (rowsInserted == 0) {
+            log.info("Лайк уже был поставлен ранее");
+            return new LikeState(filmId, userId, true, jdbc.queryForObject(GET_LIKES_COUNT, Long.class, filmId));
+        }
+        Long likesCount = jdbc.queryForObject(CHANGE_LIKES_COUNT_RETURNING, Long.class, 1, filmId);
+        filmCache.invalidate(filmId);
+        afterCommit(() -> {
+            leaderboard.incrementLikes(filmId);
+            titleSuggester.changeLikes(filmId, 1);
+            likeMatrix.addLike(filmId, userId);
+        });
+        return new LikeState(filmId, userId, true, likesCount);
     }
 
-    public void deleteLike(Long filmId, Long userId) {
+    //удаление не проверяет внешние ключи, поэтому причину пустого удаления выясняет отдельный запрос
+    @Override
+    @Transactional
+    public LikeState deleteLike(Long filmId, Long userId) {
         log.info("Попытка удалить лайк из базы данных");
-        delete(DELETE_LIKE, filmId, userId);
+        int rowsDeleted = jdbc.update(DELETE_LIKE, filmId, userId);
+        if (rowsDeleted == 0) {
+            checkLikeTargets(filmId, userId);
+            throw new DbDeletionException("Лайк не найден");
+        }
+        Long likesCount = jdbc.queryForObject(CHANGE_LIKES_COUNT_RETURNING, Long.class, -1, filmId);
+        filmCache.invalidate(filmId);
+        afterCommit(() -> {
+            leaderboard.decrementLikes(filmId);
+            titleSuggester.changeLikes(filmId, -1);
+            likeMatrix.removeLike(filmId, userId);
+        });
+        return new LikeState(filmId, userId, false, likesCount);
+    }
+
+    //какой из ключей отсутствует, выясняет один запрос, а не разбор текста ошибки базы
+    private void checkLikeTargets(Long filmId, Long userId) {
+        jdbc.query(GET_MISSING_LIKE_REASON, rs -> {
+            if (!rs.getBoolean("film_exists")) {
+                throw new EntityNotFoundException("Фильм с таким id не найден");
+            }
+            if (!rs.getBoolean("user_exists")) {
+                throw new EntityNotFoundException("Пользователь с таким id не найден");
+            }
+        }, filmId, userId);
+    }
+
+    //применяет накопленные лайки и отмены пакетами, счетчики меняются только на реально измененные строки
+    @Transactional
+    public void applyLikeChanges(List<LikeChange> changes) {
+        log.info("Попытка применить пакет лайков: {}", changes.size());
+        List<LikeChange> added = changes.stream().filter(LikeChange::liked).toList();
+        List<LikeChange> removed = changes.stream().filter(change -> !change.liked()).toList();
+
+        Map<Long, Long> deltas = new HashMap<>();
+        List<LikeChange> applied = new ArrayList<>();
+        if (!added.isEmpty()) {
+            int[] inserted = jdbc.batchUpdate(ADD_LIKE, added.stream()
+                    .map(change -> new Object[]{change.userId(), change.filmId(), change.userId(), change.filmId()})
+                    .toList());
+            collectDeltas(deltas, applied, added, inserted, 1);
+        }
+        if (!removed.isEmpty()) {
+            int[] deleted = jdbc.batchUpdate(DELETE_LIKE, removed.stream()
+                    .map(change -> new Object[]{change.filmId(), change.userId()})
+                    .toList());
+            collectDeltas(deltas, applied, removed, deleted, -1);
+        }
+
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            jdbc.batchUpdate(CHANGE_LIKES_COUNT, deltas.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .toList());
+            filmCache.invalidateAll(deltas.keySet());
+        }
+        afterCommit(() -> {
+            for (LikeChange change : applied) {
+                if (change.liked()) {
+                    likeMatrix.addLike(change.filmId(), change.userId());
+                } else {
+                    likeMatrix.removeLike(change.filmId(), change.userId());
+                }
+            }
+            deltas.forEach(leaderboard::changeLikes);
+            deltas.forEach(titleSuggester::changeLikes);
+        });
+    }
+
+    private static void collectDeltas(Map<Long, Long> deltas, List<LikeChange> applied, List<LikeChange> changes,
+                                      int[] counts, long sign) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                LikeChange change = changes.get(i);
+                deltas.merge(change.filmId(), sign, Long::sum);
+                applied.add(change);
+            }
+        }
+    }
+
+    //пересчитывает счетчики лайков по таблице likes и возвращает найденные расхождения
+    @Transactional
+    public List<LikesCountDrift> repairLikesCount() {
+        log.info("Попытка сверить счетчики лайков с таблицей лайков");
+        List<LikesCountDrift> drifts = jdbc.query(GET_LIKES_COUNT_DRIFT, (rs, rowNum) -> new LikesCountDrift(
+                rs.getLong("id"), rs.getLong("likes_count"), rs.getLong("actual")));
+
+        if (!drifts.isEmpty()) {
+            jdbc.batchUpdate(RECOUNT_LIKES, drifts.stream()
+                    .map(drift -> new Object[]{drift.filmId()})
+                    .toList());
+            drifts.forEach(drift -> filmCache.invalidate(drift.filmId()));
+        }
+        return drifts;
     }
 
     public List<Long> getLikes(Long filmId) {
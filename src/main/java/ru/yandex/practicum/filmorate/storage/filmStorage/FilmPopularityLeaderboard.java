@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmPopularityLeaderboard {
+    private static final String GET_LIKES_COUNTS = "SELECT id, likes_count FROM films";
+
+    //больше лайков - выше, при равенстве выше фильм с меньшим id
+    private static final Comparator<Entry> RANKING = Comparator.comparingLong(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final JdbcTemplate jdbc;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Long> likesByFilm = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING);
+    //растет при любом изменении ранжируемых фильмов; внутри транзакции - только после ее завершения,
+    //чтобы по новой версии нельзя было прочитать еще не закоммиченные строки
+    private final AtomicLong version = new AtomicLong();
+    private final TransactionSynchronization bumpAfterCompletion = new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+            version.incrementAndGet();
+        }
+    };
+
+    private record Entry(long filmId, long likes) {
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        log.info("Построение рейтинга популярных фильмов");
+        Map<Long, Long> loaded = new HashMap<>();
+        jdbc.query(GET_LIKES_COUNTS, rs -> {
+            loaded.put(rs.getLong("id"), rs.getLong("likes_count"));
+        });
+
+        lock.writeLock().lock();
+        try {
+            likesByFilm.clear();
+            ranking.clear();
+            loaded.forEach((filmId, likes) -> {
+                likesByFilm.put(filmId, likes);
+                ranking.add(new Entry(filmId, likes));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        touch();
+        log.info("Рейтинг популярных фильмов построен, фильмов: {}", loaded.size());
+    }
+
+    public void addFilm(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (likesByFilm.putIfAbsent(filmId, 0L) == null) {
+                ranking.add(new Entry(filmId, 0L));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        touch();
+    }
+
+    public void removeFilm(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            Long likes = likesByFilm.remove(filmId);
+            if (likes != null) {
+                ranking.remove(new Entry(filmId, likes));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        touch();
+    }
+
+    public void incrementLikes(Long filmId) {
+        changeLikes(filmId, 1);
+    }
+
+    public void decrementLikes(Long filmId) {
+        changeLikes(filmId, -1);
+    }
+
+    public boolean containsFilm(Long filmId) {
+        lock.readLock().lock();
+        try {
+            return likesByFilm.containsKey(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getLikes(Long filmId) {
+        lock.readLock().lock();
+        try {
+            return likesByFilm.getOrDefault(filmId, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> getTop(long offset, long count) {
+        lock.readLock().lock();
+        try {
+            List<Long> result = new ArrayList<>((int) Math.min(count, ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            while (iterator.hasNext() && result.size() < count) {
+                result.add(iterator.next().filmId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void changeLikes(Long filmId, long delta) {
+        lock.writeLock().lock();
+        try {
+            Long likes = likesByFilm.get(filmId);
+            if (likes == null) {
+                return;
+            }
+            long newLikes = Math.max(0, likes + delta);
+            ranking.remove(new Entry(filmId, likes));
+            ranking.add(new Entry(filmId, newLikes));
+            likesByFilm.put(filmId, newLikes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        touch();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    //изменение фильма без изменения лайков, например правка названия или жанров
+    public void touch() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(bumpAfterCompletion);
+        } else {
+            version.incrementAndGet();
+        }
+    }
+}
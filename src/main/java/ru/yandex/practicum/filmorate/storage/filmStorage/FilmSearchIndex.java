@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.DenseIdIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+//обратный индекс по названию и описанию фильмов: слово -> сжатое множество плотных номеров фильмов
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+    private static final String GET_FILMS_TEXT = "SELECT id, name, description FROM films";
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIN_STEM_LENGTH = 3;
+    private static final int NAME_WEIGHT = 2; //совпадение в названии весит больше, чем в описании
+    private static final double LIKES_WEIGHT = 0.5;
+
+    //окончания отсортированы по убыванию длины: отрезается самое длинное подходящее
+    private static final List<String> RUSSIAN_ENDINGS = List.of(
+            "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ией", "иях", "иям",
+            "ая", "яя", "ое", "ее", "ые", "ие", "ый", "ий", "ой", "ей", "ом", "ем", "ам", "ям", "ах", "ях",
+            "ов", "ев", "ую", "юю", "ия", "ии", "ью",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й");
+    private static final List<String> ENGLISH_ENDINGS = List.of("ing", "ed", "ly", "s");
+
+    private final JdbcTemplate jdbc;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> termsByFilm = new HashMap<>();
+    private DenseIdIndex filmIndex = new DenseIdIndex();
+
+    private record Match(long filmId, double score) {
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        log.info("Построение поискового индекса фильмов");
+        Map<String, RoaringBitmap> loadedPostings = new HashMap<>();
+        Map<Integer, Map<String, Integer>> loadedTerms = new HashMap<>();
+        DenseIdIndex loadedFilmIndex = new DenseIdIndex();
+        jdbc.query(GET_FILMS_TEXT, rs -> {
+            int film = loadedFilmIndex.indexOf(rs.getLong("id"));
+            Map<String, Integer> terms = termFrequencies(rs.getString("name"), rs.getString("description"));
+            loadedTerms.put(film, terms);
+            terms.keySet().forEach(term -> loadedPostings.computeIfAbsent(term, t -> new RoaringBitmap()).add(film));
+        });
+        loadedPostings.values().forEach(RoaringBitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            postings.putAll(loadedPostings);
+            termsByFilm.clear();
+            termsByFilm.putAll(loadedTerms);
+            filmIndex = loadedFilmIndex;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс построен, фильмов: {}, слов: {}", loadedTerms.size(), loadedPostings.size());
+    }
+
+    public void putFilm(Long filmId, String name, String description) {
+        Map<String, Integer> terms = termFrequencies(name, description);
+        lock.writeLock().lock();
+        try {
+            int film = filmIndex.indexOf(filmId);
+            unindex(film);
+            termsByFilm.put(film, terms);
+            terms.keySet().forEach(term -> postings.computeIfAbsent(term, t -> new RoaringBitmap()).add(film));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            int film = filmIndex.find(filmId);
+            if (film >= 0) {
+                unindex(film);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //фильм должен содержать все слова запроса; оценка - сумма tf-idf слов плюс логарифм числа лайков
+    public List<Long> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> lists = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                RoaringBitmap films = postings.get(term);
+                if (films == null) {
+                    return List.of();
+                }
+                lists.add(films);
+            }
+            RoaringBitmap matches = FastAggregation.and(lists.iterator());
+
+            int filmCount = termsByFilm.size();
+            double[] idf = lists.stream()
+                    .mapToDouble(films -> Math.log(1 + (double) filmCount / films.getCardinality()))
+                    .toArray();
+            //меньшая оценка - в голове очереди, при равенстве выше фильм с меньшим id
+            PriorityQueue<Match> top = new PriorityQueue<>(Math.min(limit, matches.getCardinality()) + 1,
+                    (first, second) -> first.score() != second.score()
+                            ? Double.compare(first.score(), second.score())
+                            : Long.compare(second.filmId(), first.filmId()));
+            matches.forEach((int film) -> {
+                long filmId = filmIndex.idAt(film);
+                Map<String, Integer> terms = termsByFilm.get(film);
+                double score = 0;
+                int i = 0;
+                for (String term : queryTerms) {
+                    score += terms.get(term) * idf[i++];
+                }
+                score += LIKES_WEIGHT * Math.log1p(leaderboard.getLikes(filmId));
+                top.add(new Match(filmId, score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+
+            List<Long> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                result.add(top.poll().filmId());
+            }
+            return result.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unindex(int film) {
+        Map<String, Integer> terms = termsByFilm.remove(film);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            RoaringBitmap films = postings.get(term);
+            films.remove(film);
+            if (films.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static Map<String, Integer> termFrequencies(String name, String description) {
+        Map<String, Integer> terms = new HashMap<>();
+        tokenize(name).forEach(term -> terms.merge(term, NAME_WEIGHT, Integer::sum));
+        tokenize(description).forEach(term -> terms.merge(term, 1, Integer::sum));
+        return terms;
+    }
+
+    //нижний регистр, ё -> е и отрезание окончания; запрос и текст фильма проходят один и тот же путь
+    private static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT).replace('ё', 'е'))) {
+            if (!word.isEmpty()) {
+                terms.add(stem(word));
+            }
+        }
+        return terms;
+    }
+
+    private static String stem(String word) {
+        List<String> endings = isCyrillic(word) ? RUSSIAN_ENDINGS : ENGLISH_ENDINGS;
+        if (word.endsWith("ies") && word.length() > MIN_STEM_LENGTH + 2) { //stories -> story
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("ss")) { //boss, kiss
+            return word;
+        }
+        for (String ending : endings) {
+            if (word.endsWith(ending) && word.length() - ending.length() >= MIN_STEM_LENGTH) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+
+    private static boolean isCyrillic(String word) {
+        return Character.UnicodeBlock.of(word.charAt(0)) == Character.UnicodeBlock.CYRILLIC;
+    }
+}
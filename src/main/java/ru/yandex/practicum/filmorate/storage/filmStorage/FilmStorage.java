@@ -1,7 +1,11 @@
 package ru.yandex.practicum.filmorate.storage.filmStorage;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeState;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface FilmStorage {
@@ -9,15 +13,29 @@ public interface FilmStorage {
 
     Film getOrCheckById(Long id);
 
+    EntityVersion getOrCheckVersion(Long id);
+
     List<Film> getAll();
 
+    List<Film> getByIds(Collection<Long> ids);
+
+    List<Film> getPage(Long afterId, int limit);
+
     void deleteFilmById(Long id);
 
     Film updateById(Long id, Film film);
 
-    void addLike(Long filmId, Long userId);
+    LikeState addLike(Long filmId, Long userId);
+
+    LikeState deleteLike(Long filmId, Long userId);
+
+    List<Long> getMostPopularFilms(Long count, Long offset);
+
+    List<Long> getMostPopularFilms(Long count, Long offset, Long genreId, Long mpaId, Integer year);
+
+    long getPopularFilmsVersion();
 
-    void deleteLike(Long filmId, Long userId);
+    List<Long> searchFilms(String query, int limit);
 
-    List<Long> getMostPopularFilms(Long limit);
+    List<Suggestion> suggestFilms(String prefix, int limit);
 }
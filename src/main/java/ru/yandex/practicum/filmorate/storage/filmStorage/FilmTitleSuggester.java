@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.storage.PrefixIndex;
+
+import java.util.List;
+
+//подсказки по началу названия фильма, самые залайканные первыми; счетчики лайков меняются вместе с рейтингом
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmTitleSuggester implements MeterBinder {
+    private static final String GET_FILM_TITLES = "SELECT id, name, likes_count FROM films";
+
+    private final JdbcTemplate jdbc;
+    private final PrefixIndex index = new PrefixIndex();
+
+    @PostConstruct
+    public void rebuild() {
+        log.info("Построение подсказок по названиям фильмов");
+        index.load(jdbc.query(GET_FILM_TITLES, (rs, rowNum) -> new PrefixIndex.Entry(
+                rs.getLong("id"), rs.getString("name"), rs.getLong("likes_count"))));
+        log.info("Подсказки по названиям фильмов построены, фильмов: {}", index.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.suggest.memory", index, PrefixIndex::estimateMemoryBytes)
+                .description("Оценка памяти индекса подсказок")
+                .baseUnit("bytes")
+                .tag("index", "films")
+                .register(registry);
+    }
+
+    public void putFilm(Long filmId, String name, long likes) {
+        index.put(filmId, name, likes);
+    }
+
+    public void removeFilm(Long filmId) {
+        index.remove(filmId);
+    }
+
+    public void changeLikes(Long filmId, long delta) {
+        index.addWeight(filmId, delta);
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return index.suggest(prefix, limit);
+    }
+}
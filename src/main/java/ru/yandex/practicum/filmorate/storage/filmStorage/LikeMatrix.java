@@ -0,0 +1,247 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.DenseIdIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//матрица лайков пользователь x фильм в сжатых битовых множествах, хранится по строкам и по столбцам;
+//в множествах лежат плотные номера фильмов и пользователей, а не их id из базы
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeMatrix {
+    private static final String GET_LIKES = "SELECT film_id, user_id FROM likes";
+    private static final int MIN_NEIGHBOURS_PER_TASK = 256;
+
+    private final JdbcTemplate jdbc;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, RoaringBitmap> filmsByUser = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> usersByFilm = new HashMap<>();
+    private DenseIdIndex filmIndex = new DenseIdIndex();
+    private DenseIdIndex userIndex = new DenseIdIndex();
+
+    private record Candidate(long filmId, double score) {
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        log.info("Построение матрицы лайков");
+        Map<Integer, RoaringBitmap> loadedFilmsByUser = new HashMap<>();
+        Map<Integer, RoaringBitmap> loadedUsersByFilm = new HashMap<>();
+        DenseIdIndex loadedFilmIndex = new DenseIdIndex();
+        DenseIdIndex loadedUserIndex = new DenseIdIndex();
+        jdbc.query(GET_LIKES, rs -> {
+            int film = loadedFilmIndex.indexOf(rs.getLong("film_id"));
+            int user = loadedUserIndex.indexOf(rs.getLong("user_id"));
+            loadedFilmsByUser.computeIfAbsent(user, id -> new RoaringBitmap()).add(film);
+            loadedUsersByFilm.computeIfAbsent(film, id -> new RoaringBitmap()).add(user);
+        });
+        loadedFilmsByUser.values().forEach(RoaringBitmap::runOptimize);
+        loadedUsersByFilm.values().forEach(RoaringBitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            filmsByUser.putAll(loadedFilmsByUser);
+            usersByFilm.clear();
+            usersByFilm.putAll(loadedUsersByFilm);
+            filmIndex = loadedFilmIndex;
+            userIndex = loadedUserIndex;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Матрица лайков построена, пользователей: {}, фильмов: {}",
+                loadedFilmsByUser.size(), loadedUsersByFilm.size());
+    }
+
+    public void addLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            int film = filmIndex.indexOf(filmId);
+            int user = userIndex.indexOf(userId);
+            filmsByUser.computeIfAbsent(user, id -> new RoaringBitmap()).add(film);
+            usersByFilm.computeIfAbsent(film, id -> new RoaringBitmap()).add(user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            int film = filmIndex.find(filmId);
+            int user = userIndex.find(userId);
+            if (film < 0 || user < 0) {
+                return;
+            }
+            removeFrom(filmsByUser, user, film);
+            removeFrom(usersByFilm, film, user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //лайки удаленного фильма удаляются в базе каскадно
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            int film = filmIndex.find(filmId);
+            if (film < 0) {
+                return;
+            }
+            RoaringBitmap users = usersByFilm.remove(film);
+            if (users != null) {
+                users.forEach((int user) -> removeFrom(filmsByUser, user, film));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //лайки удаленного пользователя удаляются в базе каскадно
+    public void removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            int user = userIndex.find(userId);
+            if (user < 0) {
+                return;
+            }
+            RoaringBitmap films = filmsByUser.remove(user);
+            if (films != null) {
+                films.forEach((int film) -> removeFrom(usersByFilm, film, user));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //"лайкнувшие то же, что и вы, лайкнули и это": соседи - все, кто лайкнул хоть один фильм пользователя,
+    //вес соседа - число общих лайков; оценка фильма - сумма весов его лайкнувших соседей,
+    //деленная на корень из числа всех его лайков, чтобы просто популярные фильмы не вытесняли остальные
+    public List<Long> recommend(long userId, int count) {
+        lock.readLock().lock();
+        try {
+            int user = userIndex.find(userId);
+            RoaringBitmap liked = user < 0 ? null : filmsByUser.get(user);
+            if (liked == null || liked.isEmpty()) {
+                return List.of();
+            }
+            List<RoaringBitmap> likersOfLiked = new ArrayList<>(liked.getCardinality());
+            liked.forEach((int film) -> likersOfLiked.add(usersByFilm.get(film)));
+            RoaringBitmap neighbours = FastAggregation.or(likersOfLiked.iterator());
+            neighbours.remove(user);
+            if (neighbours.isEmpty()) {
+                return List.of();
+            }
+
+            int[] neighbourIds = neighbours.toArray();
+            int perTask = Math.max(MIN_NEIGHBOURS_PER_TASK,
+                    neighbourIds.length / (ForkJoinPool.commonPool().getParallelism() * 2));
+            float[] scores = ForkJoinPool.commonPool()
+                    .invoke(new ScoreTask(neighbourIds, 0, neighbourIds.length, perTask, liked, filmIndex.size()));
+            return selectTop(scores, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> selectTop(float[] scores, int count) {
+        //больше оценка - выше, при равенстве выше фильм с меньшим id
+        PriorityQueue<Candidate> top = new PriorityQueue<>(Math.min(count, scores.length) + 1,
+                (first, second) -> first.score() != second.score()
+                        ? Double.compare(first.score(), second.score())
+                        : Long.compare(second.filmId(), first.filmId()));
+        for (int film = 0; film < scores.length; film++) {
+            if (scores[film] == 0) {
+                continue;
+            }
+            top.add(new Candidate(filmIndex.idAt(film), scores[film] / Math.sqrt(usersByFilm.get(film).getCardinality())));
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+        List<Long> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().filmId());
+        }
+        return result.reversed();
+    }
+
+    private static void removeFrom(Map<Integer, RoaringBitmap> rows, int key, int value) {
+        RoaringBitmap row = rows.get(key);
+        if (row == null) {
+            return;
+        }
+        row.remove(value);
+        if (row.isEmpty()) {
+            rows.remove(key);
+        }
+    }
+
+    //соседи делятся на части, каждая копит оценки в своем массиве, массивы складываются при слиянии
+    private class ScoreTask extends RecursiveTask<float[]> {
+        private final int[] neighbourIds;
+        private final int from;
+        private final int to;
+        private final int perTask;
+        private final RoaringBitmap liked;
+        private final int filmIdBound;
+
+        ScoreTask(int[] neighbourIds, int from, int to, int perTask, RoaringBitmap liked, int filmIdBound) {
+            this.neighbourIds = neighbourIds;
+            this.from = from;
+            this.to = to;
+            this.perTask = perTask;
+            this.liked = liked;
+            this.filmIdBound = filmIdBound;
+        }
+
+        @Override
+        protected float[] compute() {
+            if (to - from <= perTask) {
+                return scoreNeighbours();
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(neighbourIds, from, middle, perTask, liked, filmIdBound);
+            left.fork();
+            float[] scores = new ScoreTask(neighbourIds, middle, to, perTask, liked, filmIdBound).compute();
+            float[] leftScores = left.join();
+            for (int film = 0; film < scores.length; film++) {
+                scores[film] += leftScores[film];
+            }
+            return scores;
+        }
+
+        private float[] scoreNeighbours() {
+            float[] scores = new float[filmIdBound];
+            for (int i = from; i < to; i++) {
+                RoaringBitmap films = filmsByUser.get(neighbourIds[i]);
+                int weight = RoaringBitmap.andCardinality(films, liked);
+                IntIterator iterator = films.getIntIterator();
+                while (iterator.hasNext()) {
+                    int film = iterator.next();
+                    if (!liked.contains(film)) {
+                        scores[film] += weight;
+                    }
+                }
+            }
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.LikeState;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//лайки подтверждаются сразу и копятся в памяти, в базу уходят пакетами раз в flush-interval-ms из планировщика;
+//пара остается в буфере, пока ее пакет не записан; заполненный буфер не растет, новые пары пишутся синхронно,
+//поэтому при падении процесса теряется не больше max-pending неприменных изменений.
+//отмена лайка через буфер не проверяет, был ли лайк, и не отвечает 404, в отличие от синхронной записи
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBuffer implements MeterBinder {
+    private final FilmDbStorage filmDbStorage;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final UserStorage userDbStorage;
+    private final int batchSize;
+    private final int maxPending;
+
+    //для каждой пары фильм-пользователь хранится только последнее действие, включая пары из пакета в записи
+    private final Map<LikeKey, Boolean> pending = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    public LikeWriteBuffer(FilmDbStorage filmDbStorage, FilmPopularityLeaderboard leaderboard,
+                           UserStorage userDbStorage,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.max-pending:10000}") int maxPending) {
+        this.filmDbStorage = filmDbStorage;
+        this.leaderboard = leaderboard;
+        this.userDbStorage = userDbStorage;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.likes.pending", pending, Map::size)
+                .description("Лайки, ожидающие записи в базу")
+                .register(registry);
+        Gauge.builder("filmorate.likes.coalesced", coalesced, LongAdder::sum)
+                .description("Лайки, отмененные последующим действием до записи в базу")
+                .register(registry);
+        Gauge.builder("filmorate.likes.overflowed", overflowed, LongAdder::sum)
+                .description("Лайки, записанные сразу из-за заполненного буфера")
+                .register(registry);
+        Gauge.builder("filmorate.likes.dropped", dropped, LongAdder::sum)
+                .description("Лайки, отброшенные при записи из-за удаленного фильма или пользователя")
+                .register(registry);
+    }
+
+    //счетчик в ответе - из рейтинга, он еще не учитывает изменения, ожидающие записи
+    public LikeState addLike(Long filmId, Long userId) {
+        if (!enqueue(filmId, userId, true)) {
+            return filmDbStorage.addLike(filmId, userId);
+        }
+        return new LikeState(filmId, userId, true, leaderboard.getLikes(filmId));
+    }
+
+    public LikeState deleteLike(Long filmId, Long userId) {
+        if (!enqueue(filmId, userId, false)) {
+            return filmDbStorage.deleteLike(filmId, userId);
+        }
+        return new LikeState(filmId, userId, false, leaderboard.getLikes(filmId));
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    //в заполненном буфере перезаписывается только уже ожидающая пара, новая пишется вызывающим синхронно;
+    //пара из записываемого пакета тоже считается ожидающей, поэтому синхронная запись не может обогнать
+    //более раннее действие по той же паре
+    private boolean enqueue(Long filmId, Long userId, boolean liked) {
+        checkExists(filmId, userId);
+        LikeKey key = new LikeKey(filmId, userId);
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            overflowed.increment();
+            return false;
+        }
+        Boolean previous = pending.put(key, liked);
+        if (previous != null) {
+            coalesced.increment();
+        }
+        return true;
+    }
+
+    //фильмы проверяются по рейтингу, пользователи - через кэш сущностей, который сбрасывается при удалении
+    private void checkExists(Long filmId, Long userId) {
+        if (!leaderboard.containsFilm(filmId)) {
+            throw new EntityNotFoundException("Фильм с таким id не найден");
+        }
+        userDbStorage.getOrCheckById(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<LikeChange> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        for (Map.Entry<LikeKey, Boolean> entry : pending.entrySet()) {
+            batch.add(new LikeChange(entry.getKey().filmId(), entry.getKey().userId(), entry.getValue()));
+            if (batch.size() == batchSize) {
+                if (!write(batch)) {
+                    return;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Запись оставшихся лайков перед остановкой: {}", pending.size());
+        flush();
+    }
+
+    //пакет падает целиком, если фильм или пользователь удален до записи; тогда изменения пишутся по одному.
+    //после записи пара убирается из буфера, только если за это время по ней не пришло другое действие
+    private boolean write(List<LikeChange> batch) {
+        try {
+            filmDbStorage.applyLikeChanges(batch);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Пакет лайков не записан, запись по одному: {}", e.getMostSpecificCause().getMessage());
+            batch.forEach(this::writeOne);
+        } catch (DataAccessException e) {
+            log.error("Не удалось записать пакет лайков, изменения остаются в буфере", e);
+            return false;
+        }
+        batch.forEach(change -> pending.remove(new LikeKey(change.filmId(), change.userId()), change.liked()));
+        return true;
+    }
+
+    private void writeOne(LikeChange change) {
+        try {
+            filmDbStorage.applyLikeChanges(List.of(change));
+        } catch (DataIntegrityViolationException e) {
+            dropped.increment();
+            log.warn("Лайк пользователя {} фильму {} отброшен: фильм или пользователь удален",
+                    change.userId(), change.filmId());
+        }
+    }
+}
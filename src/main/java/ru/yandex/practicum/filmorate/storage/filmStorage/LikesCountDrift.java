@@ -0,0 +1,4 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+public record LikesCountDrift(Long filmId, long storedCount, long actualCount) {
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.filmStorage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikesCountRepairJob {
+    private final FilmDbStorage filmDbStorage;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmTitleSuggester titleSuggester;
+
+    @Value("${filmorate.likes-count-repair.on-startup:true}")
+    private boolean repairOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (repairOnStartup) {
+            repair();
+        }
+    }
+
+    @Scheduled(cron = "${filmorate.likes-count-repair.cron:-}")
+    public List<LikesCountDrift> repair() {
+        List<LikesCountDrift> drifts = filmDbStorage.repairLikesCount();
+        if (drifts.isEmpty()) {
+            log.info("Счетчики лайков совпадают с таблицей лайков");
+        } else {
+            drifts.forEach(drift -> log.warn("Расхождение счетчика лайков у фильма {}: сохранено {}, фактически {}",
+                    drift.filmId(), drift.storedCount(), drift.actualCount()));
+            log.warn("Исправлено счетчиков лайков: {}", drifts.size());
+        }
+        //рейтинг, матрица и подсказки перестраиваются всегда: лайки могли пропасть каскадно вместе с пользователем
+        leaderboard.rebuild();
+        likeMatrix.rebuild();
+        titleSuggester.rebuild();
+        return drifts;
+    }
+}
@@ -1,17 +1,27 @@
 package ru.yandex.practicum.filmorate.storage.genreStorage;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
 
+import java.util.Collection;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+@Slf4j
 @Repository
 public class GenreDbStorage extends BaseDbStorage<Genre> {
     private static final String ADD_GENRE = "INSERT INTO genres (name) VALUES(:name)";
@@ -19,29 +29,105 @@ public class GenreDbStorage extends BaseDbStorage<Genre> {
     private static final String GET_GENRES = "SELECT * FROM genres ORDER BY id";
     private static final String GET_FILMS_GENRES = "SELECT g.id, g.name FROM genres g" +
             " JOIN films_genres fg ON g.id = fg.genre_id WHERE fg.film_id = ? ORDER BY g.id";
+    private static final String GET_ALL_FILMS_GENRES = "SELECT fg.film_id, g.id, g.name FROM films_genres fg" +
+            " JOIN genres g ON g.id = fg.genre_id ORDER BY fg.film_id, g.id";
+    private static final String GET_GENRES_BY_FILM_IDS = "SELECT fg.film_id, g.id, g.name FROM films_genres fg" +
+            " JOIN genres g ON g.id = fg.genre_id WHERE fg.film_id IN (:filmIds) ORDER BY fg.film_id, g.id";
+
+    //справочник жанров в памяти, addGenre публикует новую копию; наружу отдаются копии жанров,
+    //чтобы правка полученного объекта не меняла снимок
+    private volatile SortedMap<Long, Genre> snapshot = Collections.emptySortedMap();
+    //версия снимка для ETag всего справочника и его элементов, меняется при каждой публикации снимка
+    private volatile EntityVersion version = new EntityVersion(0, Instant.EPOCH);
 
     public GenreDbStorage(JdbcTemplate jdbc, RowMapper<Genre> mapper) {
         super(jdbc, mapper);
     }
 
-    public Genre addGenre(Genre genre) {
+    @PostConstruct
+    public void reload() {
+        SortedMap<Long, Genre> loaded = new TreeMap<>();
+        for (Genre genre : findMany(GET_GENRES)) {
+            loaded.put(genre.getId(), genre);
+        }
+        snapshot = Collections.unmodifiableSortedMap(loaded);
+        version = new EntityVersion(version.version() + 1, Instant.now());
+        log.info("Загружено жанров: {}", loaded.size());
+    }
+
+    public synchronized Genre addGenre(Genre genre) {
         Map<String, Object> params = new HashMap<>();
         params.put("name", genre.getName());
-        return insertWithId(ADD_GENRE, GET_GENRE_BY_ID, params)
+        Genre added = insertWithId(ADD_GENRE, GET_GENRE_BY_ID, params)
                 .orElseThrow(() -> new EntityNotFoundException("Не удалось добавить жанр"));
+
+        SortedMap<Long, Genre> updated = new TreeMap<>(snapshot);
+        updated.put(added.getId(), added);
+        snapshot = Collections.unmodifiableSortedMap(updated);
+        version = new EntityVersion(version.version() + 1, Instant.now());
+        return copy(added);
     }
 
     public Genre getOrCheckGenreById(Long id) {
-        return findOne(GET_GENRE_BY_ID, id)
-                .orElseThrow(() -> new EntityNotFoundException("Не удалось найти жанр"));
+        Genre genre = snapshot.get(id);
+        if (genre == null) {
+            throw new EntityNotFoundException("Не удалось найти жанр");
+        }
+        return copy(genre);
+    }
+
+    //проверка всего набора жанров разом, результат отсортирован по id
+    public List<Genre> getOrCheckGenresByIds(Collection<Long> ids) {
+        SortedMap<Long, Genre> genres = snapshot;
+        List<Long> missingIds = ids.stream()
+                .filter(id -> id == null || !genres.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            throw new EntityNotFoundException("Не удалось найти жанры: " + missingIds);
+        }
+        return ids.stream()
+                .distinct()
+                .sorted()
+                .map(id -> copy(genres.get(id)))
+                .toList();
     }
 
     public List<Genre> getAllGenres() {
-        return findMany(GET_GENRES);
+        return snapshot.values().stream().map(GenreDbStorage::copy).toList();
     }
 
     public List<Genre> getFilmsGenres(Long id) {
         return new ArrayList<>(findMany(GET_FILMS_GENRES, id));
     }
 
-}
\ No newline at end of file
+    //жанры всех фильмов одним запросом, сгруппированные по id фильма
+    public Map<Long, List<Genre>> getAllFilmsGenres() {
+        Map<Long, List<Genre>> result = new HashMap<>();
+        jdbc.query(GET_ALL_FILMS_GENRES, groupingHandler(result));
+        return result;
+    }
+
+    public Map<Long, List<Genre>> getGenresByFilmIds(Collection<Long> filmIds) {
+        Map<Long, List<Genre>> result = new HashMap<>();
+        if (!filmIds.isEmpty()) {
+            namedJdbc.query(GET_GENRES_BY_FILM_IDS, Map.of("filmIds", filmIds), groupingHandler(result));
+        }
+        return result;
+    }
+
+    private RowCallbackHandler groupingHandler(Map<Long, List<Genre>> result) {
+        return rs -> result.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>())
+                .add(mapper.mapRow(rs, rs.getRow()));
+    }
+
+    public EntityVersion getVersion() {
+        return version;
+    }
+
+    public static Genre copy(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        return copy;
+    }
+}
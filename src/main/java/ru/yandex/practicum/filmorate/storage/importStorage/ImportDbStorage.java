@@ -0,0 +1,184 @@
+package ru.yandex.practicum.filmorate.storage.importStorage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//пакетная запись импортируемых строк, каждый вызов - одна транзакция
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ImportDbStorage {
+    private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration, mpa_id)" +
+            " VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_FILM_WITH_ID = "INSERT INTO films" +
+            " (id, name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_FILM_GENRE = "INSERT INTO films_genres (film_id, genre_id) VALUES (?, ?)";
+    private static final String INSERT_USER = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_USER_WITH_ID = "INSERT INTO users (id, email, login, name, birthday)" +
+            " VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_LIKE = "INSERT INTO likes (film_id, user_id) SELECT ?, ? WHERE NOT EXISTS" +
+            " (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String CHANGE_LIKES_COUNT = "UPDATE films SET likes_count = likes_count + ?," +
+            " version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    //статус как при PUT /users/{id}/friends/{friendId}: заявка подтверждена, если есть встречная
+    private static final String MERGE_FRIENDSHIP = "MERGE INTO friendships (user_id, friend_id, status)" +
+            " KEY (user_id, friend_id) SELECT ?, ?, CASE WHEN EXISTS" +
+            " (SELECT 1 FROM friendships WHERE user_id = ? AND friend_id = ?) THEN 'approved' ELSE 'pending' END";
+    private static final String APPROVE_REVERSE_FRIENDSHIP = "UPDATE friendships SET status = 'approved'" +
+            " WHERE user_id = ? AND friend_id = ?";
+    private static final String BUMP_USER_VERSION = "UPDATE users SET version = version + 1," +
+            " updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    private static final String GET_NEXT_ID = "SELECT COALESCE(MAX(id), 0) + 1 FROM ";
+
+    private final JdbcTemplate jdbc;
+    private final FilmCache filmCache;
+
+    //сгенерированные id не записываются в модели: при откате пакета его строки повторяются по одной
+    //и должны снова получить id из генератора, а не устаревшие явные
+    @Transactional
+    public int importFilms(List<Film> films) {
+        List<Film> withId = films.stream().filter(film -> film.getId() != null).toList();
+        List<Film> withoutId = films.stream().filter(film -> film.getId() == null).toList();
+        List<Object[]> genreLinks = new ArrayList<>();
+        withId.forEach(film -> addGenreLinks(genreLinks, film.getId(), film));
+
+        if (!withId.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FILM_WITH_ID, withId, withId.size(), (ps, film) -> {
+                ps.setLong(1, film.getId());
+                setFilmColumns(ps, 2, film);
+            });
+            syncIdentity("films");
+        }
+        if (!withoutId.isEmpty()) {
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.batchUpdate(con -> con.prepareStatement(INSERT_FILM, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            setFilmColumns(ps, 1, withoutId.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return withoutId.size();
+                        }
+                    }, keyHolder);
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < withoutId.size(); i++) {
+                long filmId = ((Number) keys.get(i).values().iterator().next()).longValue();
+                addGenreLinks(genreLinks, filmId, withoutId.get(i));
+            }
+        }
+
+        if (!genreLinks.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FILM_GENRE, genreLinks);
+        }
+        return films.size();
+    }
+
+    private static void addGenreLinks(List<Object[]> genreLinks, long filmId, Film film) {
+        Set<Long> genreIds = new LinkedHashSet<>();
+        film.getGenres().forEach(genre -> genreIds.add(genre.getId()));
+        genreIds.forEach(genreId -> genreLinks.add(new Object[]{filmId, genreId}));
+    }
+
+    @Transactional
+    public int importUsers(List<User> users) {
+        List<User> withId = users.stream().filter(user -> user.getId() != null).toList();
+        List<Object[]> withoutIdArgs = users.stream()
+                .filter(user -> user.getId() == null)
+                .map(user -> new Object[]{user.getEmail(), user.getLogin(), user.getName(), user.getBirthday()})
+                .toList();
+
+        if (!withId.isEmpty()) {
+            jdbc.batchUpdate(INSERT_USER_WITH_ID, withId.stream()
+                    .map(user -> new Object[]{user.getId(), user.getEmail(), user.getLogin(), user.getName(),
+                            user.getBirthday()})
+                    .toList());
+            syncIdentity("users");
+        }
+        if (!withoutIdArgs.isEmpty()) {
+            jdbc.batchUpdate(INSERT_USER, withoutIdArgs);
+        }
+        return users.size();
+    }
+
+    //повторные лайки пропускаются, счетчики фильмов увеличиваются на число реально вставленных строк
+    @Transactional
+    public int importLikes(List<Like> likes) {
+        int[] inserted = jdbc.batchUpdate(INSERT_LIKE, likes.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId(), like.filmId(), like.userId()})
+                .toList());
+
+        Map<Long, Integer> addedByFilm = new HashMap<>();
+        int total = 0;
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                addedByFilm.merge(likes.get(i).filmId(), inserted[i], Integer::sum);
+                total += inserted[i];
+            }
+        }
+        if (!addedByFilm.isEmpty()) {
+            jdbc.batchUpdate(CHANGE_LIKES_COUNT, addedByFilm.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .toList());
+            filmCache.invalidateAll(addedByFilm.keySet());
+        }
+        return total;
+    }
+
+    //статус из файла не используется: он выводится из наличия встречной заявки, встречная заявка подтверждается
+    @Transactional
+    public int importFriendships(List<Friendship> friendships) {
+        jdbc.batchUpdate(MERGE_FRIENDSHIP, friendships.stream()
+                .map(friendship -> new Object[]{friendship.userId(), friendship.friendId(),
+                        friendship.friendId(), friendship.userId()})
+                .toList());
+        jdbc.batchUpdate(APPROVE_REVERSE_FRIENDSHIP, friendships.stream()
+                .map(friendship -> new Object[]{friendship.friendId(), friendship.userId()})
+                .toList());
+        //список друзей входит в ответ GET /users/{id}, поэтому его изменение меняет версию пользователя
+        jdbc.batchUpdate(BUMP_USER_VERSION, friendships.stream()
+                .map(Friendship::userId)
+                .distinct()
+                .map(userId -> new Object[]{userId})
+                .toList());
+        return friendships.size();
+    }
+
+    //после вставки строк с явными id генератор сдвигается за максимальный id в той же транзакции, до строк без id
+    //этого же пакета; в H2 сдвиг генератора не завершает транзакцию и не отменяется при ее откате
+    private void syncIdentity(String table) {
+        Long nextId = jdbc.queryForObject(GET_NEXT_ID + table, Long.class);
+        jdbc.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + nextId);
+        log.info("Генератор id таблицы {} сдвинут на {}", table, nextId);
+    }
+
+    private void setFilmColumns(PreparedStatement ps, int firstIndex, Film film) throws SQLException {
+        ps.setString(firstIndex, film.getName());
+        ps.setString(firstIndex + 1, film.getDescription());
+        ps.setDate(firstIndex + 2, film.getReleaseDate() == null ? null : Date.valueOf(film.getReleaseDate()));
+        ps.setLong(firstIndex + 3, film.getDuration());
+        ps.setLong(firstIndex + 4, film.getMpa().getId());
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.storage.mappers;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MPA;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -19,6 +20,15 @@ public class FilmRowMapper implements RowMapper<Film> {
         film.setDescription(resultSet.getString("description"));
         film.setReleaseDate(resultSet.getObject("release_date", LocalDate.class));
         film.setDuration(resultSet.getLong("duration"));
+        film.setLikesCount(resultSet.getLong("likes_count"));
+
+        long mpaId = resultSet.getLong("mpa_id");
+        if (!resultSet.wasNull()) {
+            MPA mpa = new MPA();
+            mpa.setId(mpaId);
+            mpa.setName(resultSet.getString("mpa_name"));
+            film.setMpa(mpa);
+        }
         return film;
     }
 }
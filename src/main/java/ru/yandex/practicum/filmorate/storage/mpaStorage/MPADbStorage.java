@@ -1,39 +1,84 @@
 package ru.yandex.practicum.filmorate.storage.mpaStorage;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
 
+import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+@Slf4j
 @Repository
 public class MPADbStorage extends BaseDbStorage<MPA> {
     private static final String ADD_MPA = "INSERT INTO mpa (name) VALUES(:name)";
     private static final String GET_MPA_BY_ID = "SELECT * FROM mpa WHERE id = ?";
     private static final String GET_MPA = "SELECT * FROM mpa ORDER BY id";
 
+    //неизменяемый снимок таблицы mpa, при добавлении рейтинга подменяется целиком; наружу отдаются копии,
+    //чтобы правка полученного объекта не меняла снимок
+    private volatile SortedMap<Long, MPA> snapshot = Collections.emptySortedMap();
+    //версия снимка для ETag всего справочника и его элементов, меняется при каждой публикации снимка
+    private volatile EntityVersion version = new EntityVersion(0, Instant.EPOCH);
+
     public MPADbStorage(JdbcTemplate jdbc, RowMapper<MPA> mapper) {
         super(jdbc, mapper);
     }
 
-    public MPA addMpa(MPA mpa) {
+    @PostConstruct
+    public void reload() {
+        SortedMap<Long, MPA> loaded = new TreeMap<>();
+        for (MPA mpa : findMany(GET_MPA)) {
+            loaded.put(mpa.getId(), mpa);
+        }
+        snapshot = Collections.unmodifiableSortedMap(loaded);
+        version = new EntityVersion(version.version() + 1, Instant.now());
+        log.info("Загружено возрастных рейтингов: {}", loaded.size());
+    }
+
+    public synchronized MPA addMpa(MPA mpa) {
         Map<String, Object> params = new HashMap<>();
         params.put("name", mpa.getName());
-        return insertWithId(ADD_MPA, GET_MPA_BY_ID, params)
+        MPA added = insertWithId(ADD_MPA, GET_MPA_BY_ID, params)
                 .orElseThrow(() -> new EntityNotFoundException("Не удалось добавить возрастной рейтинг"));
+
+        SortedMap<Long, MPA> updated = new TreeMap<>(snapshot);
+        updated.put(added.getId(), added);
+        snapshot = Collections.unmodifiableSortedMap(updated);
+        version = new EntityVersion(version.version() + 1, Instant.now());
+        return copy(added);
     }
 
     public MPA getOrCheckMpaById(Long id) {
-        return findOne(GET_MPA_BY_ID, id)
-                .orElseThrow(() -> new EntityNotFoundException("Не удалось найти возрастной рейтинг"));
+        MPA mpa = snapshot.get(id);
+        if (mpa == null) {
+            throw new EntityNotFoundException("Не удалось найти возрастной рейтинг");
+        }
+        return copy(mpa);
     }
 
     public List<MPA> getAllMpa() {
-        return findMany(GET_MPA);
+        return snapshot.values().stream().map(MPADbStorage::copy).toList();
+    }
+
+    public EntityVersion getVersion() {
+        return version;
+    }
+
+    public static MPA copy(MPA mpa) {
+        MPA copy = new MPA();
+        copy.setId(mpa.getId());
+        copy.setName(mpa.getName());
+        return copy;
     }
-}
\ No newline at end of file
+}
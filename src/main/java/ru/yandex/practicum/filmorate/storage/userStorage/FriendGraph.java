@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.storage.userStorage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//друзья каждого пользователя - отсортированный массив id; массивы не изменяются, при записи заменяются копией
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendGraph {
+    private static final String GET_FRIENDSHIPS = "SELECT user_id, friend_id FROM friendships" +
+            " ORDER BY user_id, friend_id";
+    private static final String HAS_FRIENDSHIP = "SELECT COUNT(*) FROM friendships WHERE user_id = ? AND friend_id = ?";
+    private static final long[] NO_FRIENDS = new long[0];
+    private static final int PAIR_LOCKS = 64;
+
+    private final JdbcTemplate jdbc;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, long[]> friendsByUser = new HashMap<>();
+    private final Lock[] pairLocks = newPairLocks();
+
+    @PostConstruct
+    public void rebuild() {
+        log.info("Построение графа друзей");
+        Map<Long, long[]> loaded = new HashMap<>();
+        FriendsCollector collector = new FriendsCollector(loaded);
+        jdbc.query(GET_FRIENDSHIPS, collector);
+        collector.flush();
+
+        lock.writeLock().lock();
+        try {
+            friendsByUser.clear();
+            friendsByUser.putAll(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Граф друзей построен, пользователей с друзьями: {}", loaded.size());
+    }
+
+    //изменения одной пары, закоммиченные почти одновременно, могут дойти сюда в обратном порядке, поэтому
+    //после коммита состояние пары перечитывается из базы под блокировкой пары: последним применяется
+    //состояние не старше последнего коммита
+    public void syncFriend(long userId, long friendId) {
+        Lock pairLock = pairLocks[Math.floorMod(Long.hashCode(userId * 31 + friendId), PAIR_LOCKS)];
+        pairLock.lock();
+        try {
+            Integer rows = jdbc.queryForObject(HAS_FRIENDSHIP, Integer.class, userId, friendId);
+            if (rows != null && rows > 0) {
+                addFriend(userId, friendId);
+            } else {
+                removeFriend(userId, friendId);
+            }
+        } finally {
+            pairLock.unlock();
+        }
+    }
+
+    public void addFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            long[] friends = friendsByUser.getOrDefault(userId, NO_FRIENDS);
+            int position = Arrays.binarySearch(friends, friendId);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -position - 1;
+            long[] updated = new long[friends.length + 1];
+            System.arraycopy(friends, 0, updated, 0, insertAt);
+            updated[insertAt] = friendId;
+            System.arraycopy(friends, insertAt, updated, insertAt + 1, friends.length - insertAt);
+            friendsByUser.put(userId, updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            removeFromFriends(userId, friendId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //дружбы удаленного пользователя удаляются в базе каскадно, здесь - вручную с обеих сторон
+    public void removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            friendsByUser.remove(userId);
+            for (Long otherId : friendsByUser.keySet().toArray(new Long[0])) {
+                removeFromFriends(otherId, userId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long[] getFriends(long userId) {
+        lock.readLock().lock();
+        try {
+            return friendsByUser.getOrDefault(userId, NO_FRIENDS).clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //пересечение двух отсортированных массивов за один проход, результат тоже отсортирован
+    public long[] getCommonFriends(long userId, long otherId) {
+        long[] first;
+        long[] second;
+        lock.readLock().lock();
+        try {
+            first = friendsByUser.getOrDefault(userId, NO_FRIENDS);
+            second = friendsByUser.getOrDefault(otherId, NO_FRIENDS);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long[] common = new long[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return count == common.length ? common : Arrays.copyOf(common, count);
+    }
+
+    private static Lock[] newPairLocks() {
+        Lock[] locks = new Lock[PAIR_LOCKS];
+        for (int i = 0; i < PAIR_LOCKS; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private void removeFromFriends(long userId, long friendId) {
+        long[] friends = friendsByUser.get(userId);
+        if (friends == null) {
+            return;
+        }
+        int position = Arrays.binarySearch(friends, friendId);
+        if (position < 0) {
+            return;
+        }
+        if (friends.length == 1) {
+            friendsByUser.remove(userId);
+            return;
+        }
+        long[] updated = new long[friends.length - 1];
+        System.arraycopy(friends, 0, updated, 0, position);
+        System.arraycopy(friends, position + 1, updated, position, friends.length - position - 1);
+        friendsByUser.put(userId, updated);
+    }
+
+    //строки приходят отсортированными по user_id, поэтому массив пользователя собирается целиком за раз
+    private static class FriendsCollector implements RowCallbackHandler {
+        private final Map<Long, long[]> target;
+        private long currentUserId;
+        private long[] buffer = new long[16];
+        private int size;
+
+        FriendsCollector(Map<Long, long[]> target) {
+            this.target = target;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long userId = rs.getLong("user_id");
+            if (userId != currentUserId) {
+                flush();
+            }
+            currentUserId = userId;
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = rs.getLong("friend_id");
+        }
+
+        void flush() {
+            if (size == 0) {
+                return;
+            }
+            target.put(currentUserId, Arrays.copyOf(buffer, size));
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.storage.userStorage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+
+import java.util.HashSet;
+
+//строки пользователей без друзей: друзья живут в FriendGraph, поэтому дружба кэш не сбрасывает
+@Component
+public class UserCache extends EntityCache<User> {
+    public UserCache(@Value("${filmorate.entity-cache.users.max-weight:8388608}") long maxWeight) {
+        super("users", maxWeight);
+    }
+
+    @Override
+    protected int weigh(User user) {
+        return 120 + 2 * (length(user.getEmail()) + length(user.getLogin()) + length(user.getName()))
+                + 16 * user.getFriendSet().size();
+    }
+
+    @Override
+    protected User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        copy.setFriendSet(new HashSet<>(user.getFriendSet()));
+        return copy;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -4,10 +4,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -18,30 +27,54 @@ import java.util.Set;
 @Repository
 public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
     private static final String GET_USERS = "SELECT * FROM users";
+    private static final String GET_USERS_PAGE = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
     private static final String GET_USER_BY_ID = "SELECT * FROM users WHERE id = ?";
+    private static final String GET_USERS_BY_IDS = "SELECT * FROM users WHERE id IN (:ids)";
     private static final String DELETE_USER_BY_ID = "DELETE FROM users WHERE id = ?";
+    private static final String GET_LIKED_FILM_IDS = "SELECT film_id FROM likes WHERE user_id = ?";
+    private static final String DECREMENT_LIKED_FILMS_COUNT = "UPDATE films SET likes_count = likes_count - 1," +
+            " version = version + 1, updated_at = CURRENT_TIMESTAMP" +
+            " WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?)";
     private static final String INSERT_USER = "INSERT INTO users (email, login, name, birthday)" +
             " VALUES (:email, :login, :name, :birthday)";
     private static final String UPDATE_BY_ID = "UPDATE users SET login = :login, name = :name," +
-            " email = :email, birthday = :birthday WHERE id = :id";
-
-    private static final String ADD_FRIEND = "INSERT INTO friendships (user_id, friend_id, status)" +
-            " VALUES(?, ?, 'pending')";
+            " email = :email, birthday = :birthday, version = version + 1, updated_at = CURRENT_TIMESTAMP" +
+            " WHERE id = :id";
+    private static final String GET_USER_VERSION = "SELECT version, updated_at FROM users WHERE id = ?";
+
+    private static final String LOCK_USERS = "SELECT * FROM users WHERE id IN (?, ?) ORDER BY id FOR UPDATE";
+    private static final String ADD_FRIEND = "MERGE INTO friendships (user_id, friend_id, status) KEY (user_id, friend_id)" +
+            " SELECT ?, ?, CASE WHEN EXISTS (SELECT 1 FROM friendships WHERE user_id = ? AND friend_id = ?)" +
+            " THEN 'approved' ELSE 'pending' END";
     private static final String DELETE_FRIEND = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?";
-    private static final String GET_FRIENDS = "SELECT friend_id FROM friendships WHERE user_id = ?";
-    private static final String GET_COMMON_FRIENDS = "SELECT DISTINCT f1.friend_id AS common_friend" +
-            " FROM friendships f1 JOIN friendships f2 ON f1.friend_id = f2.friend_id" +
-            " WHERE f1.user_id = ? and f2.user_id = ?";
+    private static final String BUMP_VERSION = "UPDATE users SET version = version + 1, updated_at = CURRENT_TIMESTAMP" +
+            " WHERE id = ?";
 
-    private static final String GET_STATUS = "SELECT COUNT(status) FROM friendships WHERE user_id = ?" +
-            " AND friend_id = ?";
     private static final String CHANGE_STATUS_APPROVED = "UPDATE friendships SET status = 'approved'" +
             " WHERE user_id = :userId AND friend_id = :friendId";
     private static final String CHANGE_STATUS_PENDING = "UPDATE friendships SET status = 'pending'" +
             " WHERE user_id = :userId AND friend_id = :friendId";
 
-    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper) {
+    private final FriendGraph friendGraph;
+    private final UserLoginSuggester loginSuggester;
+    private final UserCache userCache;
+    private final FilmCache filmCache;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmTitleSuggester titleSuggester;
+
+    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper, FriendGraph friendGraph,
+                         UserLoginSuggester loginSuggester, UserCache userCache, FilmCache filmCache,
+                         FilmPopularityLeaderboard leaderboard, LikeMatrix likeMatrix,
+                         FilmTitleSuggester titleSuggester) {
         super(jdbc, mapper);
+        this.friendGraph = friendGraph;
+        this.loginSuggester = loginSuggester;
+        this.userCache = userCache;
+        this.filmCache = filmCache;
+        this.leaderboard = leaderboard;
+        this.likeMatrix = likeMatrix;
+        this.titleSuggester = titleSuggester;
     }
 
     @Override
@@ -53,17 +86,32 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
         params.put("name", user.getName());
         params.put("birthday", user.getBirthday());
 
-        return insertWithId(INSERT_USER, GET_USER_BY_ID, params)
+        User savedUser = insertWithId(INSERT_USER, GET_USER_BY_ID, params)
                 .orElseThrow(() -> new EntityNotFoundException("Не удалось добавить пользователя"));
+        Long userId = savedUser.getId();
+        String login = savedUser.getLogin();
+        afterCommit(() -> loginSuggester.putUser(userId, login));
+        return savedUser;
     }
 
     @Override
     public User getOrCheckById(Long id) {
+        return userCache.get(id, this::loadUser);
+    }
+
+    private User loadUser(Long id) {
         log.info("Попытка найти пользователя в базе данных");
         return findOne(GET_USER_BY_ID, id)
                 .orElseThrow(() -> new EntityNotFoundException("Пользователь с таким id не найден"));
     }
 
+    @Override
+    public EntityVersion getOrCheckVersion(Long id) {
+        log.info("Попытка получить версию пользователя из базы данных");
+        return findVersion(GET_USER_VERSION, id)
+                .orElseThrow(() -> new EntityNotFoundException("Пользователь с таким id не найден"));
+    }
+
     @Override
     public List<User> getAll() {
         log.info("Попытка найти нескольких пользователей в базе данных");
@@ -71,9 +119,37 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
     }
 
     @Override
+    public List<User> getPage(Long afterId, int limit) {
+        log.info("Попытка получить страницу пользователей из базы данных");
+        return findMany(GET_USERS_PAGE, afterId, limit);
+    }
+
+    @Override
+    public List<User> getByIds(Collection<Long> ids) {
+        log.info("Попытка найти пользователей по списку id");
+        return findManyByIds(GET_USERS_BY_IDS, ids, User::getId);
+    }
+
+    @Override
+    @Transactional
     public void delete(Long id) {
         log.info("Попытка удалить пользователя из базы данных");
+        //у фильмов с лайками пользователя меняется счетчик: устаревают их записи в кэше, место в рейтинге,
+        //вес в подсказках и строка пользователя в матрице лайков
+        List<Long> likedFilmIds = jdbc.queryForList(GET_LIKED_FILM_IDS, Long.class, id);
+        jdbc.update(DECREMENT_LIKED_FILMS_COUNT, id); //лайки пользователя удалятся каскадно
         delete(DELETE_USER_BY_ID, id);
+        userCache.invalidate(id);
+        filmCache.invalidateAll(likedFilmIds);
+        afterCommit(() -> {
+            likedFilmIds.forEach(filmId -> {
+                leaderboard.decrementLikes(filmId);
+                titleSuggester.changeLikes(filmId, -1);
+            });
+            likeMatrix.removeUser(id);
+            friendGraph.removeUser(id);
+            loginSuggester.removeUser(id);
+        });
     }
 
     @Override
@@ -87,49 +163,81 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
         params.put("id", id);
 
         update(UPDATE_BY_ID, params);
-        return getOrCheckById(id);
+        userCache.invalidate(id);
+        User updatedUser = loadUser(id);
+        String login = updatedUser.getLogin();
+        afterCommit(() -> loginSuggester.putUser(id, login));
+        return updatedUser;
     }
 
-    public void addFriend(Long userId, Long friendId) {
-        log.info("Попытка добавить друга в базе данных");
-        jdbc.update(ADD_FRIEND, userId, friendId);
+    @Override
+    public List<Suggestion> suggestUsers(String prefix, int limit) {
+        log.info("Попытка подобрать подсказки по логинам пользователей");
+        return loginSuggester.suggest(prefix, limit);
     }
 
-    public void deleteFriend(Long userId, Long friendId) {
-        log.info("Попытка удалить друга в базе данных");
-        delete(DELETE_FRIEND, userId, friendId);
+    //заявка и статус встречной заявки меняются в одной транзакции под блокировкой обоих пользователей;
+    //блокировки берутся по возрастанию id, поэтому встречные запросы не взаимоблокируются.
+    //список друзей входит в ответ GET /users/{id}, поэтому его изменение меняет версию пользователя
+    @Transactional
+    public User addFriend(Long userId, Long friendId) {
+        log.info("Попытка добавить друга в базе данных");
+        User user = lockUsers(userId, friendId);
+        jdbc.update(ADD_FRIEND, userId, friendId, friendId, userId);
+        namedJdbc.update(CHANGE_STATUS_APPROVED, Map.of("userId", friendId, "friendId", userId));
+        jdbc.update(BUMP_VERSION, userId);
+        afterCommit(() -> friendGraph.syncFriend(userId, friendId));
+        //граф обновится только после коммита, поэтому новый друг добавляется в ответ явно
+        Set<Long> friends = toSet(friendGraph.getFriends(userId));
+        friends.add(friendId);
+        user.setFriendSet(friends);
+        return user;
     }
 
-    public Set<Long> getFriendsSet(Long userId) {
-        log.info("Попытка получить список друзей пользователя");
-        return new HashSet<>(jdbc.queryForList(GET_FRIENDS, Long.class, userId));
+    @Transactional
+    public User deleteFriend(Long userId, Long friendId) {
+        log.info("Попытка удалить друга в базе данных");
+        User user = lockUsers(userId, friendId);
+        if (jdbc.update(DELETE_FRIEND, userId, friendId) > 0) {
+            namedJdbc.update(CHANGE_STATUS_PENDING, Map.of("userId", friendId, "friendId", userId));
+            jdbc.update(BUMP_VERSION, userId);
+            afterCommit(() -> friendGraph.syncFriend(userId, friendId));
+        } else {
+            log.info("Пользователь не был в друзьях");
+        }
+        Set<Long> friends = toSet(friendGraph.getFriends(userId));
+        friends.remove(friendId);
+        user.setFriendSet(friends);
+        return user;
     }
 
-    public Set<Long> getCommonFriends(Long userId, Long friendId) {
-        log.info("Попытка получить список общих друзей 2 пользователей");
-        return new HashSet<>(jdbc.queryForList(GET_COMMON_FRIENDS, Long.class, userId, friendId));
+    private User lockUsers(Long userId, Long friendId) {
+        if (userId.equals(friendId)) {
+            throw new ValidationException("Пользователь не может добавить в друзья самого себя");
+        }
+        List<User> users = jdbc.query(LOCK_USERS, mapper, userId, friendId);
+        return users.stream()
+                .filter(user -> user.getId().equals(userId))
+                .findFirst()
+                .filter(user -> users.stream().anyMatch(other -> other.getId().equals(friendId)))
+                .orElseThrow(() -> new EntityNotFoundException("Пользователь с таким id не найден"));
     }
 
-    public int statusCount(Long userId, Long friendId) {
-        log.info("Проверка существования 'дружбы' между пользователями");
-        return jdbc.queryForObject(GET_STATUS, Integer.class, userId, friendId);
+    private static Set<Long> toSet(long[] ids) {
+        Set<Long> result = new HashSet<>(ids.length * 2);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
     }
 
-    public void applyStatusApproved(Long userId, Long friendId) {
-        log.info("Попытка установить статус дружбы ПОДТВЕРЖДЕНО");
-        Map<String, Object> params = new HashMap<>();
-        params.put("userId", userId);
-        params.put("friendId", friendId);
-
-        update(CHANGE_STATUS_APPROVED, params);
+    public long[] getFriendIds(Long userId) {
+        log.info("Попытка получить id друзей пользователя");
+        return friendGraph.getFriends(userId);
     }
 
-    public void applyStatusPending(Long userId, Long friendId) {
-        log.info("Попытка установить статус дружбы ОТПРАВЛЕНА ЗАЯВКА");
-        Map<String, Object> params = new HashMap<>();
-        params.put("userId", userId);
-        params.put("friendId", friendId);
-
-        namedJdbc.update(CHANGE_STATUS_PENDING, params);
+    public long[] getCommonFriends(Long userId, Long friendId) {
+        log.info("Попытка получить список общих друзей 2 пользователей");
+        return friendGraph.getCommonFriends(userId, friendId);
     }
-}
\ No newline at end of file
+}
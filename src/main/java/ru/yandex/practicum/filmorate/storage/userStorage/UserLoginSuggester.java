@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.storage.userStorage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.storage.PrefixIndex;
+
+import java.util.List;
+
+//подсказки по началу логина; у пользователей нет лайков, поэтому вес у всех одинаковый и порядок - по алфавиту
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserLoginSuggester implements MeterBinder {
+    private static final String GET_USER_LOGINS = "SELECT id, login FROM users";
+
+    private final JdbcTemplate jdbc;
+    private final PrefixIndex index = new PrefixIndex();
+
+    @PostConstruct
+    public void rebuild() {
+        log.info("Построение подсказок по логинам пользователей");
+        index.load(jdbc.query(GET_USER_LOGINS, (rs, rowNum) -> new PrefixIndex.Entry(
+                rs.getLong("id"), rs.getString("login"), 0)));
+        log.info("Подсказки по логинам пользователей построены, пользователей: {}", index.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.suggest.memory", index, PrefixIndex::estimateMemoryBytes)
+                .description("Оценка памяти индекса подсказок")
+                .baseUnit("bytes")
+                .tag("index", "users")
+                .register(registry);
+    }
+
+    public void putUser(Long userId, String login) {
+        index.put(userId, login, 0);
+    }
+
+    public void removeUser(Long userId) {
+        index.remove(userId);
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return index.suggest(prefix, limit);
+    }
+}
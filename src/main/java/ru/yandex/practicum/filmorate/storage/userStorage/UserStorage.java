@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.storage.userStorage;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserStorage {
@@ -9,9 +12,17 @@ public interface UserStorage {
 
     User getOrCheckById(Long id);
 
+    EntityVersion getOrCheckVersion(Long id);
+
     List<User> getAll();
 
+    List<User> getByIds(Collection<Long> ids);
+
+    List<User> getPage(Long afterId, int limit);
+
     void delete(Long id);
 
     User updateById(Long id, User user);
+
+    List<Suggestion> suggestUsers(String prefix, int limit);
 }
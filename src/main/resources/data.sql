@@ -13,4 +13,8 @@ VALUES
     (3, 'Мультфильм'),
     (4, 'Триллер'),
     (5, 'Документальный'),
-    (6, 'Боевик');
\ No newline at end of file
+    (6, 'Боевик');
+-- справочники засеваются с явными id, поэтому генератор сдвигается за них, иначе первый POST /mpa или /genres
+-- получит уже занятый id
+ALTER TABLE mpa ALTER COLUMN id RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM mpa);
+ALTER TABLE genres ALTER COLUMN id RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM genres);
@@ -3,7 +3,9 @@ id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
 email VARCHAR(100) NOT NULL UNIQUE,
 login VARCHAR(100) NOT NULL,
 name VARCHAR(100),
-birthday DATE NOT NULL
+birthday DATE NOT NULL,
+version BIGINT NOT NULL DEFAULT 0,
+updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
 CREATE TABLE IF NOT EXISTS genres (
@@ -30,9 +32,22 @@ name VARCHAR(100) NOT NULL,
 description VARCHAR(255) NOT NULL,
 release_date DATE NOT NULL,
 duration INT NOT NULL,
-mpa_id INT REFERENCES mpa(id)
+mpa_id INT REFERENCES mpa(id),
+likes_count BIGINT NOT NULL DEFAULT 0,
+version BIGINT NOT NULL DEFAULT 0,
+updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+-- для баз, созданных до появления счетчика лайков
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, id);
+
+-- версия строки для ETag и Last-Modified: растет при каждом изменении того, что видит клиент
+ALTER TABLE films ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE films ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
 CREATE TABLE IF NOT EXISTS likes (
 film_id BIGINT NOT NULL REFERENCES films(id) ON DELETE CASCADE,
 user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
@@ -45,4 +60,9 @@ film_id BIGINT NOT NULL REFERENCES films(id) ON DELETE CASCADE,
 genre_id BIGINT NOT NULL REFERENCES genres(id) ON DELETE CASCADE,
 
 UNIQUE(film_id, genre_id)
-);
\ No newline at end of file
+);
+
+-- для популярных фильмов с фильтрами по жанру, рейтингу и году выпуска
+CREATE INDEX IF NOT EXISTS films_genres_genre_idx ON films_genres (genre_id, film_id);
+CREATE INDEX IF NOT EXISTS films_mpa_idx ON films (mpa_id);
+CREATE INDEX IF NOT EXISTS films_release_date_idx ON films (release_date);
\ No newline at end of file
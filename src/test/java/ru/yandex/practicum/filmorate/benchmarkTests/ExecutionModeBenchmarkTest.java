@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.benchmarkTests;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//сравнение режимов выполнения запросов: пул платформенных потоков Tomcat и виртуальные потоки (профиль virtual-threads)
+//запуск: mvn test -Pbenchmark; параметры: -Dbenchmark.clients, -Dbenchmark.duration, -Dbenchmark.tomcat-threads
+@Tag("benchmark")
+class ExecutionModeBenchmarkTest {
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 400);
+    private static final Duration WARMUP = Duration.parse(System.getProperty("benchmark.warmup", "PT5S"));
+    private static final Duration DURATION = Duration.parse(System.getProperty("benchmark.duration", "PT15S"));
+    private static final int TOMCAT_THREADS = Integer.getInteger("benchmark.tomcat-threads", 200);
+    private static final int USERS = 2_000;
+    private static final int FILMS = 5_000;
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        Result platform = run("platform", false);
+        Result virtual = run("virtual", true);
+
+        System.out.println();
+        System.out.printf("%-10s %12s %8s %14s %14s %14s%n",
+                "mode", "req/s", "errors", "p99 popular", "p99 common", "p99 genres");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-10s %12.0f %8d %12.1fms %12.1fms %12.1fms%n", result.mode, result.throughput(),
+                    result.errors.get(), result.popular.p99(), result.common.p99(), result.cheap.p99());
+        }
+        assertThat(platform.requests.get()).isPositive();
+        assertThat(virtual.requests.get()).isPositive();
+    }
+
+    private Result run(String mode, boolean virtualThreads) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(FilmorateApplication.class);
+        if (virtualThreads) {
+            builder.profiles("virtual-threads");
+        }
+
+        //аргументы командной строки перекрывают application.properties
+        try (ConfigurableApplicationContext context = builder.run("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark-" + mode,
+                "--filmorate.likes-count-repair.on-startup=false",
+                "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "--logging.level.ru.yandex.practicum=WARN")) {
+            seed(context);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            load(baseUrl, WARMUP, new Result(mode));
+            Result result = new Result(mode);
+            load(baseUrl, DURATION, result);
+            return result;
+        }
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> users = new ArrayList<>();
+        for (long id = 1; id <= USERS; id++) {
+            users.add(new Object[]{id, id + "@ya.ru", "user" + id, "user" + id, "1990-01-01"});
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", users);
+
+        List<Object[]> films = new ArrayList<>();
+        for (long id = 1; id <= FILMS; id++) {
+            films.add(new Object[]{id, "Film" + id, "Desc", "2000-01-01", 100, 1 + id % 5, id % 100});
+        }
+        jdbc.batchUpdate("INSERT INTO films (id, name, description, release_date, duration, mpa_id, likes_count)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?)", films);
+
+        List<Object[]> friendships = new ArrayList<>();
+        for (long id = 1; id <= USERS; id++) {
+            for (int i = 1; i <= 50; i++) {
+                friendships.add(new Object[]{id, 1 + (id * 7 + i * 13) % USERS});
+            }
+        }
+        jdbc.batchUpdate("MERGE INTO friendships (user_id, friend_id, status) KEY (user_id, friend_id)" +
+                " VALUES (?, ?, 'pending')", friendships);
+
+        context.getBean(FilmPopularityLeaderboard.class).rebuild();
+        context.getBean(FriendGraph.class).rebuild();
+    }
+
+    private void load(String baseUrl, Duration duration, Result result) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        long started = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        int kind = random.nextInt(10);
+                        String path;
+                        Latencies latencies;
+                        if (kind < 2) {
+                            path = "/films/popular?count=1000";
+                            latencies = result.popular;
+                        } else if (kind < 4) {
+                            path = "/users/" + (1 + random.nextInt(USERS)) + "/friends/common/"
+                                    + (1 + random.nextInt(USERS));
+                            latencies = result.common;
+                        } else {
+                            path = "/genres";
+                            latencies = result.cheap;
+                        }
+                        long requestStarted = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                                    .build(), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                result.errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            result.errors.incrementAndGet();
+                        }
+                        latencies.add(System.nanoTime() - requestStarted);
+                        result.requests.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        }
+        result.elapsedNanos = System.nanoTime() - started;
+    }
+
+    private static class Result {
+        private final String mode;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final Latencies popular = new Latencies();
+        private final Latencies common = new Latencies();
+        private final Latencies cheap = new Latencies();
+        private long elapsedNanos;
+
+        Result(String mode) {
+            this.mode = mode;
+        }
+
+        double throughput() {
+            return requests.get() / (elapsedNanos / 1e9);
+        }
+    }
+
+    private static class Latencies {
+        private final ConcurrentLinkedQueue<Long> values = new ConcurrentLinkedQueue<>();
+
+        void add(long nanos) {
+            values.add(nanos);
+        }
+
+        double p99() {
+            long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6;
+        }
+    }
+}
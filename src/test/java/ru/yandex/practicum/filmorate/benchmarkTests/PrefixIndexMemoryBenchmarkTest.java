@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.benchmarkTests;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.PrefixIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//память и время подсказок для большого каталога; запуск: mvn test -Pbenchmark -Dbenchmark.titles=1000000
+@Tag("benchmark")
+class PrefixIndexMemoryBenchmarkTest {
+    private static final int TITLES = Integer.getInteger("benchmark.titles", 1_000_000);
+    private static final int LOOKUPS = 200_000;
+    private static final String[] WORDS = {"the", "last", "night", "star", "river", "ночь", "звезда", "последний",
+        "город", "dark", "summer", "война", "love", "return", "зима", "king"};
+
+    @Test
+    void reportMemoryAndLookupTime() {
+        SplittableRandom random = new SplittableRandom(7);
+        List<PrefixIndex.Entry> entries = new ArrayList<>(TITLES);
+        for (long id = 1; id <= TITLES; id++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + id;
+            entries.add(new PrefixIndex.Entry(id, title, random.nextInt(10_000)));
+        }
+
+        long loadStarted = System.nanoTime();
+        PrefixIndex index = new PrefixIndex();
+        index.load(entries);
+        double loadMillis = (System.nanoTime() - loadStarted) / 1e6;
+
+        String[] prefixes = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            prefixes[i] = word.substring(0, 1 + random.nextInt(word.length()));
+        }
+        for (int i = 0; i < LOOKUPS; i++) { //прогрев
+            index.suggest(prefixes[i], 10);
+        }
+        long started = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += index.suggest(prefixes[i], 10).size();
+        }
+        double microsPerLookup = (System.nanoTime() - started) / 1e3 / LOOKUPS;
+
+        System.out.printf("строк: %d, построение: %.0f мс, оценка памяти: %.1f МБ, подсказка: %.2f мкс%n",
+                index.size(), loadMillis, index.estimateMemoryBytes() / 1e6, microsPerLookup);
+        assertThat(index.size()).isEqualTo(TITLES);
+        assertThat(found).isEqualTo(10L * LOOKUPS);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.configTests;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.config.GuardedDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GuardedDataSourceTest {
+    private final DriverManagerDataSource target = new DriverManagerDataSource("jdbc:h2:mem:guard", "sa", "");
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        GuardedDataSource dataSource = new GuardedDataSource(target, 1, 0, Duration.ofSeconds(1));
+
+        try (Connection ignored = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void testWaiterGetsConnectionAfterCloseAndPermitIsReleasedOnce() throws Exception {
+        GuardedDataSource dataSource = new GuardedDataSource(target, 1, 1, Duration.ofSeconds(5));
+
+        Connection first = dataSource.getConnection();
+        CompletableFuture<Connection> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (dataSource.getWaiting() == 0) {
+            Thread.onSpinWait();
+        }
+
+        first.close();
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.controllerTests;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:conditional-get",
+        "filmorate.http.cache-control.genres=max-age=60"})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class ConditionalGetTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private FilmCache filmCache;
+
+    @Autowired
+    private UserCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id)" +
+                " VALUES (1, 'Film', 'Desc', '2000-01-01', 100, 1)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday)" +
+                " VALUES (1, '1@ya.ru', 'u1', 'u1', '1990-01-01')");
+        filmCache.invalidateAll();
+        userCache.invalidateAll();
+    }
+
+    @Test
+    void testFilmNotModifiedUntilLiked() throws Exception {
+        String etag = mvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("\"");
+
+        double statementsBefore = notModifiedStatements();
+        mvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        assertThat(notModifiedStatements() - statementsBefore).isEqualTo(1); //только запрос версии
+
+        mvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        String likedEtag = mvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"likesCount\":1")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(likedEtag).isNotEqualTo(etag);
+    }
+
+    @Test
+    void testUserEtagChangesOnUpdate() throws Exception {
+        String etag = mvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "private, no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mvc.perform(put("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\": 1, \"email\": \"1@ya.ru\", \"login\": \"renamed\"," +
+                                " \"birthday\": \"1990-01-01\"}"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void testMissingEntityIsNotFound() throws Exception {
+        mvc.perform(get("/films/999").header(HttpHeaders.IF_NONE_MATCH, "\"0-0\""))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/users/999")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testReferenceDataRevalidatesBySnapshotVersion() throws Exception {
+        String etag = mvc.perform(get("/genres"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=60"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/genres/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/genres/999").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotFound());
+
+        String mpaEtag = mvc.perform(get("/mpa")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(post("/mpa").contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"X\"}"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/mpa").header(HttpHeaders.IF_NONE_MATCH, mpaEtag))
+                .andExpect(status().isOk());
+        mvc.perform(get("/mpa/999")).andExpect(status().isNotFound());
+    }
+
+    //ответы 304 пишутся в свою серию метрики с тегом status
+    private double notModifiedStatements() {
+        DistributionSummary statements = registry.find("filmorate.http.sql.statements")
+                .tag("uri", "/films/{id}")
+                .tag("status", "304")
+                .summary();
+        return statements == null ? 0 : statements.totalAmount();
+    }
+}
@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.controllerTests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:encoded-responses",
+        "filmorate.response-cache.gzip-min-size=200"})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class EncodedResponseCacheTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private GenreService genreService;
+
+    @Autowired
+    private FilmPopularityLeaderboard leaderboard;
+
+    @Autowired
+    private FilmCache filmCache;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id) VALUES" +
+                " (1, 'First', 'Desc', '2000-01-01', 100, 1), (2, 'Second', 'Desc', '2000-01-01', 100, 2)");
+        jdbc.update("INSERT INTO films_genres (film_id, genre_id) VALUES (1, 1), (2, 2)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday)" +
+                " VALUES (1, '1@ya.ru', 'u1', 'u1', '1990-01-01')");
+        leaderboard.rebuild();
+        filmCache.invalidateAll();
+    }
+
+    @Test
+    void testPopularFilmsAreServedFromBytesUntilLiked() throws Exception {
+        //тип содержимого такой же, как у ответов через Jackson: application/json без charset, тело в UTF-8
+        String jacksonType = mvc.perform(get("/films/1")).andReturn().getResponse().getContentType();
+        String first = mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(jacksonType))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        double hitsBefore = hits();
+        mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(first, true));
+        assertThat(hits() - hitsBefore).isEqualTo(1);
+
+        mvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        String liked = mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(liked).isNotEqualTo(first);
+        assertThat(objectMapper.readTree(liked).get(0).get("id").asLong()).isEqualTo(2);
+        assertThat(objectMapper.readTree(liked).get(0).get("likesCount").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void testDeletedUserLikesLeavePopularFilmsImmediately() throws Exception {
+        mvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        String liked = mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(objectMapper.readTree(liked).get(0).get("id").asLong()).isEqualTo(2);
+
+        userStorage.delete(1L);
+        String afterDelete = mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(objectMapper.readTree(afterDelete).get(0).get("id").asLong()).isEqualTo(1);
+        assertThat(objectMapper.readTree(afterDelete).get(1).get("likesCount").asLong()).isZero();
+    }
+
+    @Test
+    void testFilteredPopularFilmsAreNotCached() throws Exception {
+        double hitsBefore = hits();
+        mvc.perform(get("/films/popular?count=2&genreId=1")).andExpect(status().isOk());
+        mvc.perform(get("/films/popular?count=2&genreId=1")).andExpect(status().isOk());
+        assertThat(hits()).isEqualTo(hitsBefore);
+    }
+
+    @Test
+    void testCachedBytesMatchJacksonOutput() throws Exception {
+        mvc.perform(get("/genres")).andExpect(status().isOk());
+        mvc.perform(get("/genres"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(objectMapper.writeValueAsBytes(genreService.getAllGenres())));
+    }
+
+    @Test
+    void testLargeBodyIsGzippedOnlyForClientsAcceptingIt() throws Exception {
+        byte[] plain = mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        MvcResult gzipped = mvc.perform(get("/films/popular?count=2")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+            assertThat(in.readAllBytes()).isEqualTo(plain);
+        }
+
+        mvc.perform(get("/films/popular?count=2").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    private double hits() {
+        return registry.get("filmorate.response.cache").tag("result", "hit").functionCounter().count();
+    }
+}
@@ -0,0 +1,265 @@
+package ru.yandex.practicum.filmorate.loadTests;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//нагрузка по открытой модели: запросы отправляются по расписанию с заданной частотой независимо от ответов,
+//задержка считается от запланированного момента отправки, поэтому очередь перед сервером тоже попадает в замер
+//запуск: mvn test -Pload -Dload.rate=300 -Dload.duration=PT60S -Dload.p99-budget-ms=200
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load",
+        "filmorate.likes-count-repair.on-startup=false",
+        "logging.level.ru.yandex.practicum=WARN"})
+class LoadTest {
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+    private static final Duration WARMUP = Duration.parse(System.getProperty("load.warmup", "PT5S"));
+    private static final Duration DURATION = Duration.parse(System.getProperty("load.duration", "PT30S"));
+    private static final long P99_BUDGET_MS = Long.getLong("load.p99-budget-ms", 250);
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+    private static final int USERS = Integer.getInteger("load.users", 2_000);
+    private static final int FILMS = Integer.getInteger("load.films", 5_000);
+    private static final int SEEDED_FRIENDS = 20;
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private FilmPopularityLeaderboard leaderboard;
+
+    @Autowired
+    private LikeMatrix likeMatrix;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private FilmCache filmCache;
+
+    @Autowired
+    private UserCache userCache;
+
+    private final AtomicLong friendRequests = new AtomicLong();
+
+    private enum Endpoint {
+        FILM_BY_ID(40, "GET"),
+        POPULAR_FILMS(20, "GET"),
+        USER_FRIENDS(20, "GET"),
+        ADD_LIKE(15, "PUT"),
+        ADD_FRIEND(5, "PUT");
+
+        private final int weight;
+        private final String method;
+
+        Endpoint(int weight, String method) {
+            this.weight = weight;
+            this.method = method;
+        }
+    }
+
+    private record PlannedRequest(Endpoint endpoint, HttpRequest request) {
+    }
+
+    @Test
+    void trafficMixStaysWithinP99Budget() throws Exception {
+        seed();
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        run(http, WARMUP, new Stats());
+        Stats stats = new Stats();
+        run(http, DURATION, stats);
+
+        stats.print(System.out);
+        stats.writeHistograms(Path.of("target", "load-test"));
+
+        List<String> overBudget = new ArrayList<>();
+        stats.histograms.forEach((endpoint, histogram) -> {
+            double p99Ms = histogram.getValueAtPercentile(99) / 1000.0;
+            if (p99Ms > P99_BUDGET_MS) {
+                overBudget.add(endpoint + " p99=" + p99Ms + "ms");
+            }
+        });
+        assertThat(overBudget).as("p99 больше бюджета %d ms", P99_BUDGET_MS).isEmpty();
+        assertThat(stats.errorRate()).as("доля ошибок").isLessThanOrEqualTo(MAX_ERROR_RATE);
+    }
+
+    private void run(HttpClient http, Duration duration, Stats stats) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long total = duration.toNanos() / intervalNanos;
+        SplittableRandom random = new SplittableRandom(42);
+        long start = System.nanoTime();
+
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long intendedStart = start + i * intervalNanos;
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                PlannedRequest planned = nextRequest(random);
+                senders.submit(() -> send(http, planned, intendedStart, stats));
+            }
+            senders.shutdown();
+            senders.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void send(HttpClient http, PlannedRequest planned, long intendedStart, Stats stats) {
+        Endpoint endpoint = planned.endpoint();
+        boolean ok;
+        try {
+            ok = http.send(planned.request(), HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2;
+        } catch (IOException | InterruptedException e) {
+            ok = false;
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+        stats.histograms.get(endpoint).recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+        if (!ok) {
+            stats.errors.get(endpoint).incrementAndGet();
+        }
+    }
+
+    private PlannedRequest nextRequest(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        Endpoint endpoint = Endpoint.ADD_FRIEND;
+        for (Endpoint candidate : Endpoint.values()) {
+            if (roll < candidate.weight) {
+                endpoint = candidate;
+                break;
+            }
+            roll -= candidate.weight;
+        }
+
+        long userId = 1 + random.nextInt(USERS);
+        String path = switch (endpoint) {
+            case FILM_BY_ID -> "/films/" + (1 + random.nextInt(FILMS));
+            case POPULAR_FILMS -> "/films/popular?count=10";
+            case USER_FRIENDS -> "/users/" + userId + "/friends";
+            case ADD_LIKE -> "/films/" + (1 + random.nextInt(FILMS)) + "/like/" + userId;
+            case ADD_FRIEND -> nextNewFriendshipPath();
+        };
+        return new PlannedRequest(endpoint, HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .method(endpoint.method, HttpRequest.BodyPublishers.noBody())
+                .build());
+    }
+
+    //каждая заявка в друзья - новая пара, не пересекающаяся с засеянными (у тех смещение от USERS / 2)
+    private String nextNewFriendshipPath() {
+        long n = friendRequests.getAndIncrement();
+        long userIndex = n % USERS;
+        long offset = 1 + n / USERS;
+        return "/users/" + (1 + userIndex) + "/friends/" + (1 + (userIndex + offset) % USERS);
+    }
+
+    private void seed() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM users");
+
+        List<Object[]> users = new ArrayList<>();
+        for (long id = 1; id <= USERS; id++) {
+            users.add(new Object[]{id, id + "@ya.ru", "user" + id, "user" + id, "1990-01-01"});
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", users);
+
+        List<Object[]> films = new ArrayList<>();
+        for (long id = 1; id <= FILMS; id++) {
+            films.add(new Object[]{id, "Film" + id, "Desc", "2000-01-01", 100, 1 + id % 5});
+        }
+        jdbc.batchUpdate("INSERT INTO films (id, name, description, release_date, duration, mpa_id)" +
+                " VALUES (?, ?, ?, ?, ?, ?)", films);
+
+        List<Object[]> friendships = new ArrayList<>();
+        for (long index = 0; index < USERS; index++) {
+            for (int i = 0; i < SEEDED_FRIENDS; i++) {
+                friendships.add(new Object[]{1 + index, 1 + (index + USERS / 2 + i) % USERS});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, 'pending')",
+                friendships);
+
+        leaderboard.rebuild();
+        likeMatrix.rebuild();
+        friendGraph.rebuild();
+        filmCache.invalidateAll();
+        userCache.invalidateAll();
+    }
+
+    private static class Stats {
+        private final Map<Endpoint, Histogram> histograms = new LinkedHashMap<>();
+        private final Map<Endpoint, AtomicLong> errors = new LinkedHashMap<>();
+
+        Stats() {
+            for (Endpoint endpoint : Endpoint.values()) {
+                histograms.put(endpoint, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+                errors.put(endpoint, new AtomicLong());
+            }
+        }
+
+        double errorRate() {
+            long requests = histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+            long failed = errors.values().stream().mapToLong(AtomicLong::get).sum();
+            return requests == 0 ? 0 : (double) failed / requests;
+        }
+
+        void print(PrintStream out) {
+            out.println();
+            out.printf("%-14s %8s %7s %10s %10s %10s %10s %10s%n",
+                    "endpoint", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            histograms.forEach((endpoint, histogram) -> out.printf("%-14s %8d %7d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    endpoint, histogram.getTotalCount(), errors.get(endpoint).get(),
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0));
+        }
+
+        //распределение в формате .hgrm, его можно открыть в HdrHistogram plotter
+        void writeHistograms(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            for (Map.Entry<Endpoint, Histogram> entry : histograms.entrySet()) {
+                try (PrintStream out = new PrintStream(Files.newOutputStream(
+                        directory.resolve(entry.getKey().name().toLowerCase() + ".hgrm")))) {
+                    entry.getValue().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        }
+    }
+}
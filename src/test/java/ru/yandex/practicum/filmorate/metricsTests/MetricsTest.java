@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.metricsTests;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.metrics.ProfilingDataSource;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metrics")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private UserCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'u1', 'u1', '1990-01-01'), (2, '2@ya.ru', 'u2', 'u2', '1990-01-01')," +
+                " (3, '3@ya.ru', 'u3', 'u3', '1990-01-01')");
+        jdbc.update("INSERT INTO friendships (user_id, friend_id, status) VALUES (1, 2, 'pending'), (1, 3, 'pending')");
+        friendGraph.rebuild();
+        userCache.invalidateAll(); //иначе проверка пользователя в замерах зависит от порядка тестов
+    }
+
+    @Test
+    void testSqlStatementsAreCountedPerEndpoint() throws Exception {
+        mvc.perform(get("/users/1/friends")).andExpect(status().isOk());
+
+        DistributionSummary statements = registry.get("filmorate.http.sql.statements")
+                .tag("uri", "/users/{id}/friends")
+                .summary();
+        assertThat(statements.count()).isEqualTo(1);
+        assertThat(statements.max()).isEqualTo(2); //проверка пользователя и одна пачка друзей
+    }
+
+    @Test
+    void testStorageAndServiceMethodsAreTimed() throws Exception {
+        mvc.perform(get("/users/1/friends")).andExpect(status().isOk());
+
+        assertThat(registry.get("filmorate.storage.method")
+                .tags("class", "UserDbStorage", "method", "getByIds")
+                .timer().count()).isPositive();
+        assertThat(registry.get("filmorate.service.method")
+                .tags("class", "UserService", "method", "showAllFriends")
+                .timer().count()).isPositive();
+    }
+
+    @Test
+    void testSqlProfilerIsOffByDefault() throws Exception {
+        assertThat(dataSource).isNotInstanceOf(ProfilingDataSource.class);
+        mvc.perform(get("/admin/sql/top")).andExpect(status().isNotFound());
+        mvc.perform(put("/admin/sql/explain").param("enabled", "true")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testPrometheusEndpointExposesMetrics() throws Exception {
+        mvc.perform(get("/genres")).andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(allOf(
+                        containsString("filmorate_http_sql_statements_count"),
+                        containsString("filmorate_storage_method_seconds_bucket"),
+                        containsString("hikaricp_connections_acquire_seconds_bucket"),
+                        containsString("http_server_requests_seconds_bucket"))));
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.metricsTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.metrics.SqlProfiler;
+import ru.yandex.practicum.filmorate.model.SqlStatementStats;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:profiler", "filmorate.sql.slow-threshold=0ms",
+        "filmorate.sql.profiling.enabled=true", "filmorate.sql.admin.enabled=true"})
+@AutoConfigureMockMvc
+class SqlProfilerTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private SqlProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'u1', 'u1', '1990-01-01'), (2, '2@ya.ru', 'u2', 'u2', '1990-01-01')");
+        profiler.setExplainSlow(false);
+        profiler.reset();
+    }
+
+    @Test
+    void testStatementsAreGroupedByNormalizedSql() {
+        jdbc.queryForList("SELECT id FROM users WHERE id IN (?, ?)", Long.class, 1L, 2L);
+        jdbc.queryForList("SELECT id FROM users WHERE id IN (?, ?, ?)", Long.class, 1L, 2L, 3L);
+
+        List<SqlStatementStats> top = profiler.getTop(10);
+
+        assertThat(top).hasSize(1);
+        assertThat(top.getFirst().sql()).isEqualTo("SELECT id FROM users WHERE id IN (?...)");
+        assertThat(top.getFirst().calls()).isEqualTo(2);
+        assertThat(top.getFirst().rows()).isEqualTo(4);
+    }
+
+    @Test
+    void testSlowSelectPlanIsCapturedWhenExplainEnabled() {
+        profiler.setExplainSlow(true);
+
+        jdbc.queryForObject("SELECT login FROM users WHERE id = ?", String.class, 2L);
+
+        SqlStatementStats stats = profiler.getTop(10).getFirst();
+        assertThat(stats.slowCalls()).isEqualTo(1);
+        assertThat(stats.lastSlowPlan()).contains("scanCount");
+    }
+
+    @Test
+    void testSlowDataChangeSelectIsExplainedWithoutRerun() {
+        profiler.setExplainSlow(true);
+        Long before = jdbc.queryForObject("SELECT version FROM users WHERE id = 1", Long.class);
+        profiler.reset();
+
+        Long returned = jdbc.queryForObject("SELECT version FROM FINAL TABLE" +
+                " (UPDATE users SET version = version + 1 WHERE id = ?)", Long.class, 1L);
+
+        assertThat(returned).isEqualTo(before + 1);
+        assertThat(jdbc.queryForObject("SELECT version FROM users WHERE id = 1", Long.class)).isEqualTo(before + 1);
+        SqlStatementStats stats = profiler.getTop(10).stream()
+                .filter(statement -> statement.sql().contains("FINAL TABLE"))
+                .findFirst().orElseThrow();
+        assertThat(stats.lastSlowPlan()).isNotNull().doesNotContain("scanCount");
+    }
+
+    @Test
+    void testTopEndpointAndReset() throws Exception {
+        mvc.perform(get("/users/1/friends")).andExpect(status().isOk());
+
+        mvc.perform(get("/admin/sql/top").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)));
+
+        mvc.perform(delete("/admin/sql/stats")).andExpect(status().isNoContent());
+        assertThat(profiler.getTop(10)).isEmpty();
+    }
+}
@@ -10,29 +10,43 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
 import ru.yandex.practicum.filmorate.storage.filmStorage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
 import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
 import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
 import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
 
 import java.time.LocalDate;
 import java.util.*;
 
+//без тестовой транзакции: рейтинг и индексы в памяти меняются только после коммита
 @JdbcTest
 @AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FilmDbStorage.class, MPADbStorage.class, GenreDbStorage.class,
-        FilmRowMapper.class, GenreRowMapper.class, MpaRowMapper.class})
+@Import({FilmDbStorage.class, MPADbStorage.class, GenreDbStorage.class, FilmPopularityLeaderboard.class,
+        LikeMatrix.class, FilmSearchIndex.class, FilmTitleSuggester.class, FilmCache.class, FilmRowMapper.class, GenreRowMapper.class,
+        MpaRowMapper.class})
 class FilmServiceTests {
     @Autowired
     private JdbcTemplate jdbc;
@@ -57,15 +71,32 @@ class FilmServiceTests {
     @BeforeEach
     void setUp() {
         jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
         jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("DELETE FROM mpa");
         jdbc.update("ALTER TABLE films ALTER COLUMN id RESTART WITH 1");
+        jdbc.update("ALTER TABLE users ALTER COLUMN id RESTART WITH 1");
+        jdbc.update("ALTER TABLE mpa ALTER COLUMN id RESTART WITH 1");
+        jdbc.update("INSERT INTO mpa (name) VALUES('PG-13')");
 
         mpaStorage = new MPADbStorage(jdbc, new MpaRowMapper());
+        mpaStorage.reload();
         genreStorage = new GenreDbStorage(jdbc, new GenreRowMapper());
-        filmStorage = new FilmDbStorage(jdbc, new FilmRowMapper(), mpaStorage, genreStorage);
-        userStorage = new UserDbStorage(jdbc, new UserRowMapper());
+        genreStorage.reload();
+        FilmPopularityLeaderboard leaderboard = new FilmPopularityLeaderboard(jdbc);
+        leaderboard.rebuild();
+        FilmCache filmCache = new FilmCache(1 << 20);
+        LikeMatrix likeMatrix = new LikeMatrix(jdbc);
+        FilmTitleSuggester titleSuggester = new FilmTitleSuggester(jdbc);
+        filmStorage = new FilmDbStorage(jdbc, new FilmRowMapper(), mpaStorage, genreStorage, leaderboard,
+                likeMatrix, new FilmSearchIndex(jdbc, leaderboard), titleSuggester, filmCache);
+        userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix,
+                titleSuggester);
 
-        filmService = new FilmService(filmStorage, userStorage, mpaStorage, genreStorage);
+        filmService = new FilmService(filmStorage, userStorage);
 
         testFilm1.setMpa(testMpa);
     }
@@ -163,11 +194,79 @@ class FilmServiceTests {
         filmService.addLike(film2.getId(), user1.getId());
         filmService.addLike(film2.getId(), user2.getId());
 
-        List<Film> popular = filmService.showMostPopularFilms(2L);
+        List<Film> popular = filmService.showMostPopularFilms(2L, 0L);
 
         assertEquals(2, popular.size());
         assertEquals(film2.getId(), popular.get(0).getId());
         assertTrue(filmStorage.getLikes(popular.get(0).getId()).contains(2L));
         assertEquals(film1.getId(), popular.get(1).getId());
     }
+
+    @Test
+    void searchFilmsShouldMatchWordFormsAndFollowFilmChanges() {
+        Film funny = filmService.createFilm(testFilmCreation(null, "Веселые приключения",
+                "Комедия о путешествии", 100L));
+        Film bear = filmService.createFilm(testFilmCreation(null, "Adventures of Paddington",
+                "A bear travelling in London", 100L));
+        Film drama = filmService.createFilm(testFilmCreation(null, "Приключение", "Драма", 100L));
+        User user = userStorage.save(testUser1);
+        filmService.addLike(drama.getId(), user.getId());
+
+        assertEquals(List.of(drama.getId(), funny.getId()), ids(filmService.searchFilms("ПРИКЛЮЧЕНИЙ", 10)));
+        assertEquals(List.of(funny.getId()), ids(filmService.searchFilms("веселый путешествие", 10)));
+        assertEquals(List.of(bear.getId()), ids(filmService.searchFilms("adventure, london!", 10)));
+        assertEquals(List.of(drama.getId()), ids(filmService.searchFilms("приключение", 1)));
+        assertTrue(filmService.searchFilms("детектив", 10).isEmpty());
+
+        Film quiet = testFilmCreation(funny.getId(), "Тихий вечер", "Комедия", 100L);
+        filmService.updateFilm(quiet);
+        assertEquals(List.of(drama.getId()), ids(filmService.searchFilms("приключения", 10)));
+        assertEquals(List.of(funny.getId()), ids(filmService.searchFilms("вечер", 10)));
+
+        filmStorage.deleteFilmById(drama.getId());
+        assertTrue(filmService.searchFilms("приключения", 10).isEmpty());
+    }
+
+    @Test
+    void searchFilmsShouldHandleIdsBeyondIntRange() {
+        jdbc.update("ALTER TABLE films ALTER COLUMN id RESTART WITH 3000000000");
+        Film first = filmService.createFilm(testFilmCreation(null, "Долгая дорога", "Desc", 100L));
+        Film second = filmService.createFilm(testFilmCreation(null, "Дорога домой", "Desc", 100L));
+        User user = userStorage.save(testUser1);
+
+        assertEquals(3000000000L, first.getId());
+        assertEquals(List.of(first.getId(), second.getId()), ids(filmService.searchFilms("дороги", 10)));
+
+        filmService.addLike(second.getId(), user.getId());
+        assertEquals(List.of(second.getId(), first.getId()), ids(filmService.searchFilms("дороги", 10)));
+
+        filmStorage.deleteFilmById(second.getId());
+        assertEquals(List.of(first.getId()), ids(filmService.searchFilms("дороги", 10)));
+    }
+
+    @Test
+    void suggestFilmsShouldRankByLikesAndFollowFilmChanges() {
+        Film starWars = filmService.createFilm(testFilmCreation(null, "Star Wars", "Desc", 100L));
+        Film stalker = filmService.createFilm(testFilmCreation(null, "Сталкер", "Desc", 100L));
+        Film starship = filmService.createFilm(testFilmCreation(null, "Starship Troopers", "Desc", 100L));
+        User user = userStorage.save(testUser1);
+
+        assertEquals(List.of(new Suggestion(starWars.getId(), "Star Wars"),
+                new Suggestion(starship.getId(), "Starship Troopers")), filmService.suggestFilms("STAR", 10));
+
+        filmService.addLike(starship.getId(), user.getId());
+        assertEquals(List.of(starship.getId(), starWars.getId()), filmService.suggestFilms("star", 10).stream()
+                .map(Suggestion::id)
+                .toList());
+        assertEquals(List.of(new Suggestion(stalker.getId(), "Сталкер")), filmService.suggestFilms("ст", 1));
+
+        filmService.updateFilm(testFilmCreation(starWars.getId(), "Solaris", "Desc", 100L));
+        filmStorage.deleteFilmById(starship.getId());
+        assertTrue(filmService.suggestFilms("star", 10).isEmpty());
+        assertEquals(List.of(new Suggestion(starWars.getId(), "Solaris")), filmService.suggestFilms("sol", 10));
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
 }
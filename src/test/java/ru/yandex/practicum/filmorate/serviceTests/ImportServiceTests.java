@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.serviceTests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.ImportFormat;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.importStorage.ImportDbStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//без тестовой транзакции: откат пакета импорта должен быть виден так же, как в приложении
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "filmorate.import.chunk-size=2")
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({ImportService.class, ImportDbStorage.class, MPADbStorage.class, GenreDbStorage.class,
+        FilmPopularityLeaderboard.class, LikeMatrix.class, FilmSearchIndex.class, FilmTitleSuggester.class,
+        FriendGraph.class, UserLoginSuggester.class, FilmCache.class,
+        MpaRowMapper.class, GenreRowMapper.class})
+class ImportServiceTests {
+    private final JdbcTemplate jdbc;
+    private final ImportService importService;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final GenreDbStorage genreStorage;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("ALTER TABLE films ALTER COLUMN id RESTART WITH 1");
+        jdbc.update("ALTER TABLE users ALTER COLUMN id RESTART WITH 1");
+        leaderboard.rebuild();
+    }
+
+    @Test
+    void testImportFilmsFromNdjsonWithGenres() {
+        ImportReport report = importService.importFilms(stream("""
+                {"name":"Film1","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1},"genres":[{"id":2},{"id":1}]}
+                {"name":"Film2","description":"Desc","releaseDate":"2021-01-01","duration":90,"mpa":{"id":3}}
+                {"name":"Film3","description":"Desc","releaseDate":"2022-01-01","duration":80,"mpa":{"id":2},"genres":[{"id":6}]}
+                """), ImportFormat.NDJSON);
+
+        assertThat(report).isEqualTo(new ImportReport(3, 3, 0, List.of()));
+        assertThat(jdbc.queryForList("SELECT name FROM films ORDER BY id", String.class))
+                .containsExactly("Film1", "Film2", "Film3");
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM films_genres", Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    void testInvalidRowsAreReportedAndOthersImported() {
+        ImportReport report = importService.importFilms(stream("""
+                {"name":"Film1","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1}}
+                {"name":"","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1}}
+                not a json
+                {"name":"Film4","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":99}}
+                {"name":"Film5","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1},"genres":[{"id":42}]}
+                {"name":"Film6","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1}}
+                """), ImportFormat.NDJSON);
+
+        assertThat(report.rowsRead()).isEqualTo(6);
+        assertThat(report.rowsImported()).isEqualTo(2);
+        assertThat(report.rowsFailed()).isEqualTo(4);
+        assertThat(report.errors()).extracting(ImportError::line).containsExactly(2L, 3L, 4L, 5L);
+        assertThat(jdbc.queryForList("SELECT name FROM films ORDER BY id", String.class))
+                .containsExactly("Film1", "Film6");
+    }
+
+    @Test
+    void testFailedChunkFallsBackToSingleRows() {
+        importService.importUsers(stream("""
+                id,email,login,name,birthday
+                5,5@ya.ru,user5,,1990-01-01
+                """), ImportFormat.CSV);
+
+        ImportReport report = importService.importUsers(stream("""
+                id,email,login,name,birthday
+                4,4@ya.ru,user4,"Name, with comma",1990-01-01
+                5,dup@ya.ru,dup,dup,1990-01-01
+                6,6@ya.ru,user6,,1990-01-01
+                """), ImportFormat.CSV);
+
+        assertThat(report.rowsImported()).isEqualTo(2);
+        assertThat(report.errors()).extracting(ImportError::line).containsExactly(3L);
+        assertThat(jdbc.queryForList("SELECT name FROM users ORDER BY id", String.class))
+                .containsExactly("Name, with comma", "user5", "user6");
+    }
+
+    @Test
+    void testGeneratedIdsContinueAfterImportedIds() {
+        importService.importUsers(stream("""
+                {"id":10,"email":"10@ya.ru","login":"user10","birthday":"1990-01-01"}
+                """), ImportFormat.NDJSON);
+        jdbc.update("INSERT INTO users (email, login, name, birthday) VALUES ('n@ya.ru', 'new', 'new', '1990-01-01')");
+
+        assertThat(jdbc.queryForObject("SELECT MAX(id) FROM users", Long.class)).isEqualTo(11L);
+    }
+
+    @Test
+    void testGeneratedIdsInMixedChunkFollowExplicitIds() {
+        ImportReport report = importService.importFilms(stream("""
+                {"id":5,"name":"Film5","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1}}
+                {"name":"New1","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1}}
+                {"id":2,"name":"Film2","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1}}
+                {"name":"New2","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1}}
+                """), ImportFormat.NDJSON);
+
+        assertThat(report).isEqualTo(new ImportReport(4, 4, 0, List.of()));
+        assertThat(jdbc.queryForList("SELECT id FROM films ORDER BY name", Long.class))
+                .containsExactly(2L, 5L, 6L, 7L);
+    }
+
+    @Test
+    void testRetriedRowsOfRolledBackChunkGetFreshIds() {
+        //жанр есть в снимке, но уже удален из базы: пакет откатывается на связях с жанрами, после выдачи id
+        jdbc.update("INSERT INTO genres (id, name) VALUES (100, 'Временный')");
+        genreStorage.reload();
+        jdbc.update("DELETE FROM genres WHERE id = 100");
+        try {
+            ImportReport report = importService.importFilms(stream("""
+                    {"name":"Kept","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1},"genres":[{"id":1}]}
+                    {"name":"Broken","description":"Desc","releaseDate":"2020-01-01","duration":100,"mpa":{"id":1},"genres":[{"id":100}]}
+                    """), ImportFormat.NDJSON);
+
+            assertThat(report.rowsImported()).isEqualTo(1);
+            assertThat(report.errors()).extracting(ImportError::line).containsExactly(2L);
+            //id 1 и 2 ушли откатившемуся пакету, повторная строка получает новый id из генератора
+            assertThat(jdbc.queryForObject("SELECT id FROM films WHERE name = 'Kept'", Long.class)).isEqualTo(3L);
+            assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM films_genres", Integer.class)).isEqualTo(1);
+        } finally {
+            genreStorage.reload();
+        }
+    }
+
+    @Test
+    void testImportLikesUpdatesCountsAndLeaderboard() {
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id)" +
+                " VALUES (1, 'Film1', 'Desc', '2020-01-01', 100, 1), (2, 'Film2', 'Desc', '2021-01-01', 90, 3)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday)" +
+                " VALUES (1, '1@ya.ru', 'user1', 'user1', '1990-01-01'), (2, '2@ya.ru', 'user2', 'user2', '1990-01-01')");
+
+        ImportReport report = importService.importLikes(stream("""
+                film_id,user_id
+                2,1
+                2,2
+                2,2
+                1,1
+                1,99
+                """), ImportFormat.CSV);
+
+        assertThat(report.rowsImported()).isEqualTo(3);
+        assertThat(report.errors()).extracting(ImportError::line).containsExactly(6L);
+        assertThat(jdbc.queryForList("SELECT likes_count FROM films ORDER BY id", Long.class))
+                .containsExactly(1L, 2L);
+        assertThat(leaderboard.getTop(0L, 2L)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void testImportedFriendshipStatusFollowsReverseRequest() {
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'user1', 'user1', '1990-01-01'), (2, '2@ya.ru', 'user2', 'user2', '1990-01-01')," +
+                " (3, '3@ya.ru', 'user3', 'user3', '1990-01-01')");
+
+        ImportReport report = importService.importFriendships(stream("""
+                user_id,friend_id,status
+                1,2,approved
+                1,3,approved
+                2,1,pending
+                """), ImportFormat.CSV);
+
+        assertThat(report.rowsImported()).isEqualTo(3);
+        assertThat(jdbc.queryForList("SELECT status FROM friendships ORDER BY user_id, friend_id", String.class))
+                .containsExactly("approved", "pending", "approved");
+    }
+
+    @Test
+    void testSelfFriendshipIsRejectedOnImport() {
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'user1', 'user1', '1990-01-01'), (2, '2@ya.ru', 'user2', 'user2', '1990-01-01')");
+
+        ImportReport report = importService.importFriendships(stream("""
+                user_id,friend_id,status
+                1,1,pending
+                1,2,pending
+                """), ImportFormat.CSV);
+
+        assertThat(report.rowsImported()).isEqualTo(1);
+        assertThat(report.errors()).extracting(ImportError::line).containsExactly(2L);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM friendships WHERE user_id = friend_id", Integer.class))
+                .isZero();
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -11,19 +11,34 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
 import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
 
 import java.time.LocalDate;
 import java.util.List;
 
+//без тестовой транзакции: граф друзей меняется только после коммита
 @JdbcTest
 @AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({UserDbStorage.class, UserRowMapper.class})
+@Import({UserDbStorage.class, UserRowMapper.class, FriendGraph.class, UserLoginSuggester.class, UserCache.class,
+        FilmCache.class, FilmPopularityLeaderboard.class, LikeMatrix.class, FilmTitleSuggester.class})
 class UserServiceTests {
     @Autowired
     private JdbcTemplate jdbc;
@@ -42,7 +57,9 @@ class UserServiceTests {
         jdbc.update("DELETE FROM users");
         jdbc.update("ALTER TABLE users ALTER COLUMN id RESTART WITH 1");
 
-        userStorage = new UserDbStorage(jdbc, new UserRowMapper());
+        userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), new FilmCache(1 << 20),
+                new FilmPopularityLeaderboard(jdbc), new LikeMatrix(jdbc), new FilmTitleSuggester(jdbc));
         userService = new UserService(userStorage);
         userStorage.save(user1);
         userStorage.save(user2);
@@ -68,6 +85,27 @@ class UserServiceTests {
                 .containsExactly("user1", "user2", "user3", "user4");
     }
 
+    @Test
+    void getUsersPageShouldWalkAllUsersByCursor() {
+        CursorPage<User> firstPage = userService.getUsersPage(null, 3);
+        assertThat(firstPage.items())
+                .extracting(User::getLogin)
+                .containsExactly("user1", "user2", "user3");
+        assertNotNull(firstPage.nextCursor());
+
+        CursorPage<User> lastPage = userService.getUsersPage(firstPage.nextCursor(), 3);
+        assertThat(lastPage.items())
+                .extracting(User::getLogin)
+                .containsExactly("user4");
+        assertNull(lastPage.nextCursor());
+    }
+
+    @Test
+    void getUsersPageWithBrokenCursorShouldThrow() {
+        assertThrows(ValidationException.class, () -> userService.getUsersPage("not a cursor", 3));
+        assertThrows(ValidationException.class, () -> userService.getUsersPage(null, 0));
+    }
+
     @Test
     void updateUserWhenUserExistsShouldUpdateUserData() {
         User updatedUser = createTestUser(1L);
@@ -80,6 +118,23 @@ class UserServiceTests {
         assertEquals("new_login", result.getLogin());
     }
 
+    @Test
+    void suggestUsersShouldFollowLoginChanges() {
+        assertThat(userService.suggestUsers("USER", 3))
+                .extracting(Suggestion::text)
+                .containsExactly("user1", "user2", "user3");
+
+        User renamed = createTestUser(2L);
+        renamed.setLogin("Alice");
+        userService.updateUser(renamed);
+        assertThat(userService.suggestUsers("user", 10))
+                .extracting(Suggestion::id)
+                .containsExactly(user1.getId(), user3.getId(), commonFriend.getId());
+        assertThat(userService.suggestUsers("al", 10))
+                .containsExactly(new Suggestion(user2.getId(), "Alice"));
+        assertThat(userService.suggestUsers("bob", 10)).isEmpty();
+    }
+
     @Test
     void updateNonExistingUserShouldThrow() {
         assertThrows(EntityNotFoundException.class, () -> userService.updateUser(nonExistingUser));
@@ -96,6 +151,21 @@ class UserServiceTests {
         assertThat(userService.showAllFriends(user1.getId())).isEmpty();
     }
 
+    @Test
+    void getUserByIdShouldReturnFriendsAndChangeVersionWithThem() {
+        long initialVersion = userService.getUserVersion(user1.getId()).version();
+        userService.addFriend(user1.getId(), user2.getId());
+
+        assertThat(userService.getUserById(user1.getId()).getFriendSet()).containsExactly(user2.getId());
+        assertThat(userService.getUserById(user2.getId()).getFriendSet()).isEmpty();
+        long versionWithFriend = userService.getUserVersion(user1.getId()).version();
+        assertThat(versionWithFriend).isGreaterThan(initialVersion);
+
+        userService.deleteFriend(user1.getId(), user2.getId());
+        assertThat(userService.getUserById(user1.getId()).getFriendSet()).isEmpty();
+        assertThat(userService.getUserVersion(user1.getId()).version()).isGreaterThan(versionWithFriend);
+    }
+
     @Test
     void showAllFriendsShouldReturnUserFriends() {
         userService.addFriend(user1.getId(), user2.getId());
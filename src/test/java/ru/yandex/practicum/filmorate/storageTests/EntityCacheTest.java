@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.storageTests;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//без тестовой транзакции: внутри пишущей транзакции кэш не пополняется
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, MPADbStorage.class, GenreDbStorage.class, FilmPopularityLeaderboard.class,
+        LikeMatrix.class, FilmSearchIndex.class, FilmTitleSuggester.class, FilmCache.class, UserDbStorage.class,
+        FriendGraph.class, UserLoginSuggester.class, UserCache.class, FilmRowMapper.class, GenreRowMapper.class,
+        MpaRowMapper.class, UserRowMapper.class})
+class EntityCacheTest {
+    private final JdbcTemplate jdbc;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmCache filmCache;
+    private final UserCache userCache;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmTitleSuggester titleSuggester;
+    private final FriendGraph friendGraph;
+    private final PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id) VALUES" +
+                " (1, 'f1', 'd', '2000-01-01', 100, 1), (2, 'f2', 'd', '2000-01-01', 100, 1)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'u1', 'u1', '1990-01-01'), (2, '2@ya.ru', 'u2', 'u2', '1990-01-01')");
+        leaderboard.rebuild();
+        likeMatrix.rebuild();
+        titleSuggester.rebuild();
+        friendGraph.rebuild();
+        filmCache.invalidateAll();
+        userCache.invalidateAll();
+    }
+
+    @Test
+    void testRepeatedReadsAreServedFromCopies() {
+        CacheStats before = filmCache.stats();
+        Film first = filmStorage.getOrCheckById(1L);
+        first.setName("changed by caller");
+        Film second = filmStorage.getOrCheckById(1L);
+
+        CacheStats delta = filmCache.stats().minus(before);
+        assertThat(delta.missCount()).isEqualTo(1);
+        assertThat(delta.hitCount()).isEqualTo(1);
+        assertThat(second.getName()).isEqualTo("f1");
+        assertThat(second.getMpa().getName()).isEqualTo("G");
+    }
+
+    @Test
+    void testCachedGenresAndMpaAreNotSharedWithCallers() {
+        jdbc.update("INSERT INTO films_genres (film_id, genre_id) VALUES (1, 1)");
+        Film first = filmStorage.getOrCheckById(1L);
+        String genreName = first.getGenres().getFirst().getName();
+        first.getGenres().getFirst().setName("changed by caller");
+        first.getMpa().setName("changed by caller");
+
+        Film second = filmStorage.getOrCheckById(1L);
+        assertThat(second.getGenres().getFirst().getName()).isEqualTo(genreName);
+        assertThat(second.getMpa().getName()).isEqualTo("G");
+    }
+
+    @Test
+    void testUpdateAndLikesInvalidateFilm() {
+        Film cached = filmStorage.getOrCheckById(1L);
+        cached.setName("renamed");
+        filmStorage.updateById(1L, cached);
+        assertThat(filmStorage.getOrCheckById(1L).getName()).isEqualTo("renamed");
+
+        filmStorage.addLike(1L, 1L);
+        assertThat(filmStorage.getOrCheckById(1L).getLikesCount()).isEqualTo(1);
+        filmStorage.deleteLike(1L, 1L);
+        assertThat(filmStorage.getOrCheckById(1L).getLikesCount()).isZero();
+    }
+
+    @Test
+    void testDeletingUserRefreshesUserAndLikedFilms() {
+        filmStorage.addLike(2L, 2L);
+        assertThat(filmStorage.getOrCheckById(2L).getLikesCount()).isEqualTo(1);
+        assertThat(userStorage.getOrCheckById(2L).getLogin()).isEqualTo("u2");
+
+        userStorage.delete(2L);
+
+        assertThat(filmStorage.getOrCheckById(2L).getLikesCount()).isZero();
+        assertThrows(EntityNotFoundException.class, () -> userStorage.getOrCheckById(2L));
+    }
+
+    @Test
+    void testUpdatedUserIsReloaded() {
+        User user = userStorage.getOrCheckById(1L);
+        user.setLogin("renamed");
+        userStorage.updateById(1L, user);
+
+        assertThat(userStorage.getOrCheckById(1L).getLogin()).isEqualTo("renamed");
+    }
+
+    @Test
+    void testMissingAndUncommittedRowsAreNotCached() {
+        assertThrows(EntityNotFoundException.class, () -> filmStorage.getOrCheckById(99L));
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id)" +
+                " VALUES (99, 'late', 'd', '2000-01-01', 100, 1)");
+        assertThat(filmStorage.getOrCheckById(99L).getName()).isEqualTo("late");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbc.update("UPDATE films SET name = 'uncommitted' WHERE id = 1");
+            assertThat(filmStorage.getOrCheckById(1L).getName()).isEqualTo("uncommitted");
+            status.setRollbackOnly();
+        });
+        assertThat(filmStorage.getOrCheckById(1L).getName()).isEqualTo("f1");
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storageTests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.exportStorage.ExportDbStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({ExportDbStorage.class, FilmRowMapper.class, UserRowMapper.class})
+class ExportDbStorageTest {
+    private final JdbcTemplate jdbc;
+    private final ExportDbStorage exportStorage;
+
+    @BeforeEach
+    void setup() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id)" +
+                " VALUES (1, 'Film1', 'Desc', '2020-01-01', 100, 1), (2, 'Film2', 'Desc', '2021-01-01', 90, 3)," +
+                " (3, 'Film3', 'Desc', '2022-01-01', 80, 2)");
+        jdbc.update("INSERT INTO films_genres (film_id, genre_id) VALUES (1, 2), (1, 1), (3, 6)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday)" +
+                " VALUES (1, '1@ya.ru', 'user1', 'user1', '1990-01-01'), (2, '2@ya.ru', 'user2', 'user2', '1990-01-01')");
+        jdbc.update("INSERT INTO likes (film_id, user_id) VALUES (1, 1), (3, 2), (3, 1)");
+        jdbc.update("INSERT INTO friendships (user_id, friend_id, status) VALUES (1, 2, 'approved')," +
+                " (2, 1, 'approved')");
+    }
+
+    @Test
+    void testExportFilmsGroupsGenresPerFilm() {
+        List<Film> films = new ArrayList<>();
+        exportStorage.exportFilms(0L, films::add);
+
+        assertThat(films).extracting(Film::getId).containsExactly(1L, 2L, 3L);
+        assertThat(films.getFirst().getGenres()).extracting("id").containsExactly(1L, 2L);
+        assertThat(films.get(1).getGenres()).isEmpty();
+        assertThat(films.get(1).getMpa().getName()).isEqualTo("PG-13");
+        assertThat(films.get(2).getGenres()).extracting("name").containsExactly("Боевик");
+    }
+
+    @Test
+    void testExportResumesAfterGivenId() {
+        List<Film> films = new ArrayList<>();
+        exportStorage.exportFilms(1L, films::add);
+        assertThat(films).extracting(Film::getId).containsExactly(2L, 3L);
+
+        List<User> users = new ArrayList<>();
+        exportStorage.exportUsers(1L, users::add);
+        assertThat(users).extracting(User::getLogin).containsExactly("user2");
+
+        List<Like> likes = new ArrayList<>();
+        exportStorage.exportLikes(1L, Long.MAX_VALUE, likes::add);
+        assertThat(likes).containsExactly(new Like(3L, 1L), new Like(3L, 2L));
+    }
+
+    @Test
+    void testLikesAndFriendshipsResumeInsideFirstKey() {
+        List<Like> likes = new ArrayList<>();
+        exportStorage.exportLikes(3L, 1L, likes::add);
+        assertThat(likes).containsExactly(new Like(3L, 2L));
+
+        List<Friendship> friendships = new ArrayList<>();
+        exportStorage.exportFriendships(0L, 0L, friendships::add);
+        assertThat(friendships).extracting(Friendship::userId).containsExactly(1L, 2L);
+
+        friendships.clear();
+        exportStorage.exportFriendships(1L, 2L, friendships::add);
+        assertThat(friendships).containsExactly(new Friendship(2L, 1L, "approved"));
+    }
+}
@@ -8,19 +8,34 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exceptions.DbDeletionException;
 import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeState;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
 import ru.yandex.practicum.filmorate.storage.filmStorage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikesCountDrift;
 import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
 import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
 import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -29,16 +44,25 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+//без тестовой транзакции: рейтинг и индексы в памяти меняются только после коммита
 @JdbcTest
 @AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FilmDbStorage.class, MPADbStorage.class, GenreDbStorage.class,
-        FilmRowMapper.class, GenreRowMapper.class, MpaRowMapper.class})
+@Import({FilmDbStorage.class, MPADbStorage.class, GenreDbStorage.class, FilmPopularityLeaderboard.class,
+        LikeMatrix.class, FilmSearchIndex.class, FilmTitleSuggester.class, FilmCache.class, FilmRowMapper.class, GenreRowMapper.class,
+        MpaRowMapper.class})
 class FilmDbStorageTest {
     private final JdbcTemplate jdbc;
     private final FilmDbStorage filmStorage;
     private final MPADbStorage mpaStorage;
     private final GenreDbStorage genreStorage;
+    private final FilmPopularityLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmSearchIndex searchIndex;
+    private final FilmTitleSuggester titleSuggester;
+    private final FilmCache filmCache;
+    private final PlatformTransactionManager transactionManager;
 
     private Film testFilm1 = testFilmCreation(null, "Film1", "New Desc", 110L);
     private Film testFilm2 = testFilmCreation(null, "Film2", "New Desc", 110L);
@@ -57,12 +81,22 @@ class FilmDbStorageTest {
         jdbc.update("DELETE FROM likes");
         jdbc.update("DELETE FROM films_genres");
         jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
         jdbc.update("DELETE FROM genres");
         jdbc.update("DELETE FROM mpa");
         jdbc.update("ALTER TABLE films ALTER COLUMN id RESTART WITH 1");
+        jdbc.update("ALTER TABLE users ALTER COLUMN id RESTART WITH 1");
         jdbc.update("ALTER TABLE mpa ALTER COLUMN id RESTART WITH 1");
         jdbc.update("ALTER TABLE genres ALTER COLUMN id RESTART WITH 1");
         jdbc.update("INSERT INTO mpa (name) VALUES('PG-13')");
+        mpaStorage.reload();
+        genreStorage.reload();
+        leaderboard.rebuild();
+        likeMatrix.rebuild();
+        searchIndex.rebuild();
+        titleSuggester.rebuild();
+        filmCache.invalidateAll();
     }
 
     private static Film testFilmCreation(Long id, String name, String description, Long duration) {
@@ -132,6 +166,25 @@ class FilmDbStorageTest {
                 .hasFieldOrPropertyWithValue("description", "Updated Desc");
     }
 
+    @Test
+    void testGetPageUsesKeysetAndHydratesGenres() {
+        Genre savedDrama = genreStorage.addGenre(testGenreDrama);
+        Film film1 = filmStorage.save(testFilm1);
+        testFilm2.setGenres(List.of(savedDrama));
+        Film film2 = filmStorage.save(testFilm2);
+        Film film3 = filmStorage.save(testFilmCreation(null, "Film3", "New Desc", 110L));
+
+        assertThat(filmStorage.getPage(0L, 2))
+                .extracting(Film::getId)
+                .containsExactly(film1.getId(), film2.getId());
+
+        List<Film> secondPage = filmStorage.getPage(film1.getId(), 5);
+        assertThat(secondPage)
+                .extracting(Film::getId)
+                .containsExactly(film2.getId(), film3.getId());
+        assertThat(secondPage.getFirst().getGenres()).containsExactly(savedDrama);
+    }
+
     @Test
     void testDeleteFilm() {
         Film saved = filmStorage.save(testFilm1);
@@ -143,7 +196,8 @@ class FilmDbStorageTest {
     @Test
     void testAddAndRemoveLike() {
         Film film = filmStorage.save(testFilm1);
-        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper());
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
         User user = userStorage.save(testUser);
 
         filmStorage.addLike(film.getId(), user.getId());
@@ -153,13 +207,84 @@ class FilmDbStorageTest {
         assertEquals(0, filmStorage.getLikes(film.getId()).getFirst());
     }
 
+    @Test
+    void testLikesCountFollowsDuplicateAndMissingLikes() {
+        Film film = filmStorage.save(testFilm1);
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
+        User user = userStorage.save(testUser);
+
+        filmStorage.addLike(film.getId(), user.getId());
+        filmStorage.addLike(film.getId(), user.getId());
+        assertEquals(1L, filmStorage.getOrCheckById(film.getId()).getLikesCount());
+
+        filmStorage.deleteLike(film.getId(), user.getId());
+        assertThrows(DbDeletionException.class, () -> filmStorage.deleteLike(film.getId(), user.getId()));
+        assertEquals(0L, filmStorage.getOrCheckById(film.getId()).getLikesCount());
+    }
+
+    @Test
+    void testLikeStateAndMissingTargets() {
+        Film film = filmStorage.save(testFilm1);
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
+        User user = userStorage.save(testUser);
+
+        assertEquals(new LikeState(film.getId(), user.getId(), true, 1L), filmStorage.addLike(film.getId(), user.getId()));
+        assertEquals(new LikeState(film.getId(), user.getId(), true, 1L), filmStorage.addLike(film.getId(), user.getId()));
+        assertEquals(new LikeState(film.getId(), user.getId(), false, 0L),
+                filmStorage.deleteLike(film.getId(), user.getId()));
+
+        EntityNotFoundException missingFilm = assertThrows(EntityNotFoundException.class,
+                () -> filmStorage.addLike(999L, user.getId()));
+        assertThat(missingFilm.getMessage()).contains("Фильм");
+        EntityNotFoundException missingUser = assertThrows(EntityNotFoundException.class,
+                () -> filmStorage.addLike(film.getId(), 999L));
+        assertThat(missingUser.getMessage()).contains("Пользователь");
+        assertThrows(EntityNotFoundException.class, () -> filmStorage.deleteLike(999L, user.getId()));
+        assertThrows(EntityNotFoundException.class, () -> filmStorage.deleteLike(film.getId(), 999L));
+    }
+
+    @Test
+    void testRolledBackLikeDoesNotReachInMemoryRating() {
+        Film film = filmStorage.save(testFilm1);
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
+        User user = userStorage.save(testUser);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmStorage.addLike(film.getId(), user.getId());
+            status.setRollbackOnly();
+        });
+        assertEquals(0L, leaderboard.getLikes(film.getId()));
+
+        filmStorage.addLike(film.getId(), user.getId());
+        assertEquals(1L, leaderboard.getLikes(film.getId()));
+    }
+
+    @Test
+    void testRepairLikesCountReportsAndFixesDrift() {
+        Film film = filmStorage.save(testFilm1);
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
+        User user = userStorage.save(testUser);
+        filmStorage.addLike(film.getId(), user.getId());
+        jdbc.update("UPDATE films SET likes_count = 5 WHERE id = ?", film.getId());
+
+        assertThat(filmStorage.repairLikesCount())
+                .containsExactly(new LikesCountDrift(film.getId(), 5L, 1L));
+        assertEquals(1L, filmStorage.getOrCheckById(film.getId()).getLikesCount());
+        assertThat(filmStorage.repairLikesCount()).isEmpty();
+    }
+
     @Test
     void testGetMostPopularFilms() {
         Film film1 = filmStorage.save(testFilm1);
         testFilm2.setMpa(testMpa);
         Film film2 = filmStorage.save(testFilm2);
 
-        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper());
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
         User user = userStorage.save(testUser);
         User user2 = userStorage.save(testUser2);
 
@@ -168,10 +293,84 @@ class FilmDbStorageTest {
         filmStorage.addLike(film2.getId(), user.getId());
         filmStorage.addLike(film2.getId(), user2.getId());
 
-        assertThat(filmStorage.getMostPopularFilms(2L))
+        assertThat(filmStorage.getMostPopularFilms(2L, 0L))
                 .containsExactly(film2.getId(), film1.getId());
     }
 
+    @Test
+    void testMostPopularFilmsTiesAndOffset() {
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
+        User user = userStorage.save(testUser);
+        Film film1 = filmStorage.save(testFilm1);
+        Film film2 = filmStorage.save(testFilmCreation(null, "Film2", "New Desc", 110L));
+        Film film3 = filmStorage.save(testFilmCreation(null, "Film3", "New Desc", 110L));
+
+        filmStorage.addLike(film3.getId(), user.getId());
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L))
+                .containsExactly(film3.getId(), film1.getId(), film2.getId());
+        assertThat(filmStorage.getMostPopularFilms(1L, 1L))
+                .containsExactly(film1.getId());
+
+        filmStorage.deleteLike(film3.getId(), user.getId());
+        filmStorage.deleteFilmById(film1.getId());
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L))
+                .containsExactly(film2.getId(), film3.getId());
+
+        leaderboard.rebuild();
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L))
+                .containsExactly(film2.getId(), film3.getId());
+    }
+
+    @Test
+    void testMostPopularFilmsWithFilters() {
+        Genre savedDrama = genreStorage.addGenre(testGenreDrama);
+        Genre savedComedy = genreStorage.addGenre(testGenreComedy);
+        MPA savedG = mpaStorage.addMpa(createTestMpa(null, "G"));
+        UserDbStorage userStorage = new UserDbStorage(jdbc, new UserRowMapper(), new FriendGraph(jdbc),
+                new UserLoginSuggester(jdbc), new UserCache(1 << 20), filmCache, leaderboard, likeMatrix, titleSuggester);
+        User user = userStorage.save(testUser);
+        User user2 = userStorage.save(testUser2);
+
+        testFilm1.setGenres(List.of(savedComedy));
+        Film comedy2020 = filmStorage.save(testFilm1);
+        Film comedy2023 = testFilmCreation(null, "Film2", "New Desc", 110L);
+        comedy2023.setReleaseDate(LocalDate.of(2023, 12, 31));
+        comedy2023.setGenres(List.of(savedComedy, savedDrama));
+        comedy2023.setMpa(savedG);
+        comedy2023 = filmStorage.save(comedy2023);
+        Film drama2023 = testFilmCreation(null, "Film3", "New Desc", 110L);
+        drama2023.setReleaseDate(LocalDate.of(2023, 1, 1));
+        drama2023.setGenres(List.of(savedDrama));
+        drama2023 = filmStorage.save(drama2023);
+        Film film2024 = testFilmCreation(null, "Film4", "New Desc", 110L);
+        film2024.setReleaseDate(LocalDate.of(2024, 1, 1));
+        film2024 = filmStorage.save(film2024);
+
+        filmStorage.addLike(drama2023.getId(), user.getId());
+        filmStorage.addLike(drama2023.getId(), user2.getId());
+        filmStorage.addLike(comedy2023.getId(), user.getId());
+
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L, savedComedy.getId(), null, null))
+                .containsExactly(comedy2023.getId(), comedy2020.getId());
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L, null, null, 2023))
+                .containsExactly(drama2023.getId(), comedy2023.getId());
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L, savedComedy.getId(), null, 2023))
+                .containsExactly(comedy2023.getId());
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L, null, testMpa.getId(), null))
+                .containsExactly(drama2023.getId(), comedy2020.getId(), film2024.getId());
+        assertThat(filmStorage.getMostPopularFilms(1L, 1L, null, testMpa.getId(), null))
+                .containsExactly(comedy2020.getId());
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L, savedDrama.getId(), savedG.getId(), 2022)).isEmpty();
+        assertThat(filmStorage.getMostPopularFilms(10L, 0L, null, null, null))
+                .containsExactly(drama2023.getId(), comedy2023.getId(), comedy2020.getId(), film2024.getId());
+
+        assertThrows(EntityNotFoundException.class,
+                () -> filmStorage.getMostPopularFilms(10L, 0L, 999L, null, null));
+        assertThrows(EntityNotFoundException.class,
+                () -> filmStorage.getMostPopularFilms(10L, 0L, null, 999L, null));
+    }
+
     @Test
     void testFilmGenreRelations() {
         Genre savedDrama = genreStorage.addGenre(testGenreDrama);
@@ -188,4 +387,95 @@ class FilmDbStorageTest {
                 .asList()
                 .containsExactlyInAnyOrder(savedDrama, savedComedy);
     }
+
+    @Test
+    void testUpdateFilmWritesOnlyChangedGenres() {
+        Genre savedDrama = genreStorage.addGenre(testGenreDrama);
+        Genre savedComedy = genreStorage.addGenre(testGenreComedy);
+        testFilm1.setGenres(List.of(savedDrama, savedComedy));
+        Film saved = filmStorage.save(testFilm1);
+
+        StatementCountingJdbcTemplate countingJdbc = new StatementCountingJdbcTemplate(jdbc.getDataSource());
+        FilmPopularityLeaderboard countingLeaderboard = new FilmPopularityLeaderboard(countingJdbc);
+        MPADbStorage countingMpaStorage = new MPADbStorage(countingJdbc, new MpaRowMapper());
+        GenreDbStorage countingGenreStorage = new GenreDbStorage(countingJdbc, new GenreRowMapper());
+        countingGenreStorage.reload();
+        FilmDbStorage countingStorage = new FilmDbStorage(countingJdbc, new FilmRowMapper(),
+                countingMpaStorage, countingGenreStorage, countingLeaderboard, new LikeMatrix(countingJdbc),
+                new FilmSearchIndex(countingJdbc, countingLeaderboard),
+                new FilmTitleSuggester(countingJdbc), new FilmCache(1 << 20));
+        countingJdbc.reset();
+
+        filmForUpdate.setGenres(List.of(savedComedy, savedDrama, savedComedy));
+        Film unchanged = countingStorage.updateById(saved.getId(), filmForUpdate);
+        //обновление фильма, чтение текущих жанров и два запроса на загрузку результата
+        assertEquals(4, countingJdbc.getStatementCount());
+        assertThat(unchanged.getGenres()).containsExactly(savedDrama, savedComedy);
+
+        filmForUpdate.setGenres(List.of(savedComedy));
+        assertThat(countingStorage.updateById(saved.getId(), filmForUpdate).getGenres())
+                .containsExactly(savedComedy);
+
+        Genre unknownGenre = createTestGenre(999L, "Неизвестный");
+        filmForUpdate.setGenres(List.of(savedDrama, unknownGenre));
+        assertThrows(EntityNotFoundException.class, () -> filmStorage.updateById(saved.getId(), filmForUpdate));
+        assertThat(filmStorage.getOrCheckById(saved.getId()).getGenres()).containsExactly(savedComedy);
+    }
+
+    @Test
+    void testGetAllHydratesFilmsWithFixedNumberOfStatements() {
+        Genre savedDrama = genreStorage.addGenre(testGenreDrama);
+        Genre savedComedy = genreStorage.addGenre(testGenreComedy);
+        testFilm1.setGenres(List.of(savedDrama, savedComedy));
+        testFilm2.setGenres(List.of(savedComedy));
+        filmStorage.save(testFilm1);
+        filmStorage.save(testFilm2);
+
+        StatementCountingJdbcTemplate countingJdbc = new StatementCountingJdbcTemplate(jdbc.getDataSource());
+        FilmPopularityLeaderboard countingLeaderboard = new FilmPopularityLeaderboard(countingJdbc);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingJdbc, new FilmRowMapper(),
+                new MPADbStorage(countingJdbc, new MpaRowMapper()),
+                new GenreDbStorage(countingJdbc, new GenreRowMapper()), countingLeaderboard,
+                new LikeMatrix(countingJdbc), new FilmSearchIndex(countingJdbc, countingLeaderboard),
+                new FilmTitleSuggester(countingJdbc), new FilmCache(1 << 20));
+
+        List<Film> films = countingStorage.getAll();
+        assertEquals(2, countingJdbc.getStatementCount());
+        assertThat(films)
+                .extracting(Film::getName)
+                .containsExactly("Film1", "Film2");
+        assertThat(films.getFirst().getGenres()).containsExactly(savedDrama, savedComedy);
+        assertThat(films.get(1).getGenres()).containsExactly(savedComedy);
+        assertEquals("PG-13", films.getFirst().getMpa().getName());
+
+        for (int i = 0; i < 10; i++) {
+            filmStorage.save(testFilmCreation(null, "Film" + (i + 3), "New Desc", 110L));
+        }
+        countingJdbc.reset();
+
+        assertEquals(12, countingStorage.getAll().size());
+        assertEquals(2, countingJdbc.getStatementCount());
+    }
+
+    @Test
+    void testGetByIdsLoadsFilmsWithGenresInTwoStatements() {
+        Genre savedDrama = genreStorage.addGenre(testGenreDrama);
+        Genre savedComedy = genreStorage.addGenre(testGenreComedy);
+        testFilm1.setGenres(List.of(savedComedy, savedDrama));
+        Film first = filmStorage.save(testFilm1);
+        Film second = filmStorage.save(testFilm2);
+
+        StatementCountingJdbcTemplate countingJdbc = new StatementCountingJdbcTemplate(jdbc.getDataSource());
+        FilmPopularityLeaderboard countingLeaderboard = new FilmPopularityLeaderboard(countingJdbc);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingJdbc, new FilmRowMapper(), mpaStorage,
+                new GenreDbStorage(countingJdbc, new GenreRowMapper()), countingLeaderboard,
+                new LikeMatrix(countingJdbc), new FilmSearchIndex(countingJdbc, countingLeaderboard),
+                new FilmTitleSuggester(countingJdbc), new FilmCache(1 << 20));
+
+        List<Film> films = countingStorage.getByIds(List.of(second.getId(), 999L, first.getId()));
+        assertEquals(2, countingJdbc.getStatementCount());
+        assertThat(films).extracting(Film::getName).containsExactly("Film2", "Film1");
+        assertThat(films.get(1).getGenres()).containsExactly(savedDrama, savedComedy);
+        assertThat(films.getFirst().getMpa().getName()).isEqualTo("PG-13");
+    }
 }
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storageTests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//без тестовой транзакции: каждое изменение дружбы коммитится само, как в приложении
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({UserDbStorage.class, FriendGraph.class, UserLoginSuggester.class, UserRowMapper.class,
+        UserCache.class, FilmCache.class, FilmPopularityLeaderboard.class, LikeMatrix.class,
+        FilmTitleSuggester.class})
+class FriendshipConcurrencyTest {
+    private static final int USERS = 6;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 300;
+
+    //статус строки должен быть approved ровно тогда, когда есть встречная строка
+    private static final String COUNT_WRONG_STATUSES = "SELECT COUNT(*) FROM friendships f" +
+            " WHERE f.status <> CASE WHEN EXISTS (SELECT 1 FROM friendships r" +
+            " WHERE r.user_id = f.friend_id AND r.friend_id = f.user_id) THEN 'approved' ELSE 'pending' END";
+
+    private final JdbcTemplate jdbc;
+    private final UserDbStorage userStorage;
+    private final FriendGraph friendGraph;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        for (long id = 1; id <= USERS; id++) {
+            jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, '1990-01-01')",
+                    id, id + "@ya.ru", "u" + id, "u" + id);
+        }
+        friendGraph.rebuild();
+    }
+
+    @Test
+    void testStatusesFollowReciprocity() {
+        userStorage.addFriend(1L, 2L);
+        assertThat(status(1L, 2L)).isEqualTo("pending");
+
+        userStorage.addFriend(2L, 1L);
+        userStorage.addFriend(2L, 1L);
+        assertThat(status(1L, 2L)).isEqualTo("approved");
+        assertThat(status(2L, 1L)).isEqualTo("approved");
+
+        assertThat(userStorage.deleteFriend(1L, 2L).getFriendSet()).isEmpty();
+        assertThat(status(2L, 1L)).isEqualTo("pending");
+        assertThat(userStorage.deleteFriend(1L, 2L).getFriendSet()).isEmpty();
+
+        assertThrows(EntityNotFoundException.class, () -> userStorage.addFriend(1L, 99L));
+        assertThrows(EntityNotFoundException.class, () -> userStorage.deleteFriend(99L, 1L));
+    }
+
+    @Test
+    void testConcurrentAddsAndRemovesKeepStatusesConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        long userId = 1 + random.nextInt(USERS);
+                        long friendId = 1 + (userId + random.nextInt(USERS - 1)) % USERS;
+                        //добавления чаще удалений, чтобы встречные заявки успевали копиться
+                        if (random.nextInt(3) == 0) {
+                            userStorage.deleteFriend(userId, friendId);
+                        } else {
+                            userStorage.addFriend(userId, friendId);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(jdbc.queryForObject(COUNT_WRONG_STATUSES, Long.class)).isZero();
+        for (long id = 1; id <= USERS; id++) {
+            long[] stored = jdbc.queryForList("SELECT friend_id FROM friendships WHERE user_id = ? ORDER BY friend_id",
+                    Long.class, id).stream().mapToLong(Long::longValue).toArray();
+            assertThat(friendGraph.getFriends(id)).containsExactly(stored);
+        }
+    }
+
+    private String status(Long userId, Long friendId) {
+        return jdbc.queryForObject("SELECT status FROM friendships WHERE user_id = ? AND friend_id = ?",
+                String.class, userId, friendId);
+    }
+}
@@ -32,6 +32,7 @@ class GenreDbStorageTest {
     void setup() {
         jdbc.update("DELETE FROM genres");
         jdbc.update("ALTER TABLE genres ALTER COLUMN id RESTART WITH 1");
+        genreStorage.reload();
     }
 
     @Test
@@ -72,4 +73,15 @@ class GenreDbStorageTest {
         assertThat(result)
                 .isEqualTo(expected);
     }
+
+    @Test
+    void testReturnedGenresDoNotChangeSnapshot() {
+        genreTest.setName("Драма");
+        genreStorage.addGenre(genreTest).setName("changed by caller");
+        genreStorage.getOrCheckGenreById(1L).setName("changed by caller");
+        genreStorage.getOrCheckGenresByIds(List.of(1L)).getFirst().setName("changed by caller");
+        genreStorage.getAllGenres().getFirst().setName("changed by caller");
+
+        assertThat(genreStorage.getOrCheckGenreById(1L).getName()).isEqualTo("Драма");
+    }
 }
\ No newline at end of file
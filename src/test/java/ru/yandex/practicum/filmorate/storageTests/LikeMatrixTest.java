@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.storageTests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(LikeMatrix.class)
+class LikeMatrixTest {
+    private final JdbcTemplate jdbc;
+    private final LikeMatrix likeMatrix;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration) VALUES" +
+                " (1, 'f1', 'd', '2000-01-01', 100), (2, 'f2', 'd', '2000-01-01', 100)," +
+                " (3, 'f3', 'd', '2000-01-01', 100), (4, 'f4', 'd', '2000-01-01', 100)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'u1', 'u1', '1990-01-01'), (2, '2@ya.ru', 'u2', 'u2', '1990-01-01')," +
+                " (3, '3@ya.ru', 'u3', 'u3', '1990-01-01'), (4, '4@ya.ru', 'u4', 'u4', '1990-01-01')");
+        jdbc.update("INSERT INTO likes (film_id, user_id) VALUES" +
+                " (1, 1), (2, 1), (1, 2), (2, 2), (3, 2), (1, 3), (4, 3), (4, 4)");
+        likeMatrix.rebuild();
+    }
+
+    @Test
+    void testRecommendOrdersByOverlapWithNeighbours() {
+        //второй пользователь совпадает с первым по двум фильмам, третий - по одному
+        assertThat(likeMatrix.recommend(1L, 10)).containsExactly(3L, 4L);
+        assertThat(likeMatrix.recommend(1L, 1)).containsExactly(3L);
+        assertThat(likeMatrix.recommend(4L, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void testRecommendWithoutLikesOrNeighboursIsEmpty() {
+        assertThat(likeMatrix.recommend(99L, 10)).isEmpty();
+
+        likeMatrix.removeLike(4L, 3L);
+        assertThat(likeMatrix.recommend(4L, 10)).isEmpty();
+    }
+
+    @Test
+    void testLikesAreAppliedIncrementally() {
+        likeMatrix.removeLike(3L, 2L);
+        assertThat(likeMatrix.recommend(1L, 10)).containsExactly(4L);
+
+        likeMatrix.addLike(3L, 3L);
+        assertThat(likeMatrix.recommend(1L, 10)).containsExactly(3L, 4L);
+
+        likeMatrix.removeFilm(3L);
+        assertThat(likeMatrix.recommend(1L, 10)).containsExactly(4L);
+    }
+
+    @Test
+    void testRemovedUserNoLongerInfluencesRecommendations() {
+        likeMatrix.removeUser(2L);
+        assertThat(likeMatrix.recommend(1L, 10)).containsExactly(4L);
+        assertThat(likeMatrix.recommend(2L, 10)).isEmpty();
+    }
+
+    @Test
+    void testIdsBeyondIntRangeAreSupported() {
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration) VALUES" +
+                " (3000000000, 'big', 'd', '2000-01-01', 100)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (5000000000, 'big@ya.ru', 'big', 'big', '1990-01-01')");
+        jdbc.update("INSERT INTO likes (film_id, user_id) VALUES (3000000000, 2), (1, 5000000000)");
+        likeMatrix.rebuild();
+        assertThat(likeMatrix.recommend(1L, 10)).containsExactly(3L, 3000000000L, 4L);
+
+        likeMatrix.addLike(2L, 5000000000L);
+        assertThat(likeMatrix.recommend(5000000000L, 10)).containsExactly(3L, 3000000000L, 4L);
+
+        likeMatrix.removeFilm(3000000000L);
+        likeMatrix.removeUser(5000000000L);
+        assertThat(likeMatrix.recommend(1L, 10)).containsExactly(3L, 4L);
+        assertThat(likeMatrix.recommend(5000000000L, 10)).isEmpty();
+    }
+
+    @Test
+    void testRebuildPicksUpLikesWrittenPastMatrix() {
+        jdbc.update("INSERT INTO likes (film_id, user_id) VALUES (3, 4)");
+        assertThat(likeMatrix.recommend(4L, 10)).containsExactly(1L);
+
+        likeMatrix.rebuild();
+        assertThat(likeMatrix.recommend(4L, 10)).containsExactly(1L, 2L);
+    }
+}
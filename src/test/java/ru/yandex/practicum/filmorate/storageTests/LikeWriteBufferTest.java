@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.storageTests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.DbDeletionException;
+import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.genreStorage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//без тестовой транзакции: каждый пакет лайков пишется своей транзакцией, как в приложении;
+//планировщик включен и в тестах, поэтому его запись отодвинута, и буфер пишется только явным flush
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {"filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.batch-size=2", "filmorate.likes.write-behind.max-pending=4",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000"})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({LikeWriteBuffer.class, FilmDbStorage.class, MPADbStorage.class, GenreDbStorage.class,
+        FilmPopularityLeaderboard.class, LikeMatrix.class, FilmSearchIndex.class, FilmTitleSuggester.class,
+        UserDbStorage.class, FriendGraph.class, UserLoginSuggester.class, FilmRowMapper.class, GenreRowMapper.class,
+        MpaRowMapper.class, UserRowMapper.class, FilmCache.class, UserCache.class})
+class LikeWriteBufferTest {
+    private final JdbcTemplate jdbc;
+    private final DataSource dataSource;
+    private final LikeWriteBuffer buffer;
+    private final FilmPopularityLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        buffer.flush();
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM friendships");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("INSERT INTO films (id, name, description, release_date, duration) VALUES" +
+                " (1, 'f1', 'd', '2000-01-01', 100), (2, 'f2', 'd', '2000-01-01', 100)");
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'u1', 'u1', '1990-01-01'), (2, '2@ya.ru', 'u2', 'u2', '1990-01-01')," +
+                " (3, '3@ya.ru', 'u3', 'u3', '1990-01-01')");
+        leaderboard.rebuild();
+    }
+
+    @Test
+    void testLikesAreWrittenOnFlush() {
+        buffer.addLike(2L, 1L);
+        buffer.addLike(2L, 2L);
+        buffer.addLike(2L, 3L);
+
+        assertThat(likesCount(2L)).isZero();
+        buffer.flush();
+
+        assertThat(likesCount(2L)).isEqualTo(3);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 2", Long.class)).isEqualTo(3);
+        assertThat(leaderboard.getTop(0, 1)).containsExactly(2L);
+        assertThat(buffer.getPendingCount()).isZero();
+    }
+
+    @Test
+    void testLikeAndUnlikeBeforeFlushCancelOut() {
+        buffer.addLike(1L, 1L);
+        buffer.deleteLike(1L, 1L);
+        buffer.flush();
+
+        assertThat(likesCount(1L)).isZero();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes", Long.class)).isZero();
+    }
+
+    @Test
+    void testUnlikeAndLikeAgainKeepsExistingLike() {
+        buffer.addLike(1L, 1L);
+        buffer.flush();
+
+        buffer.deleteLike(1L, 1L);
+        buffer.addLike(1L, 1L);
+        buffer.flush();
+
+        assertThat(likesCount(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void testUnknownFilmOrUserIsRejectedImmediately() {
+        assertThrows(EntityNotFoundException.class, () -> buffer.addLike(99L, 1L));
+        assertThrows(EntityNotFoundException.class, () -> buffer.addLike(1L, 99L));
+        assertThat(buffer.getPendingCount()).isZero();
+    }
+
+    @Test
+    void testLikeOfFilmDeletedBeforeFlushIsDropped() {
+        buffer.addLike(1L, 1L);
+        buffer.addLike(2L, 1L);
+        jdbc.update("DELETE FROM films WHERE id = 1");
+
+        buffer.flush();
+
+        assertThat(jdbc.queryForList("SELECT film_id FROM likes", Long.class)).isEqualTo(List.of(2L));
+        assertThat(likesCount(2L)).isEqualTo(1);
+    }
+
+    @Test
+    void testFullBufferWritesNewPairsSynchronously() {
+        buffer.addLike(1L, 1L);
+        buffer.addLike(1L, 2L);
+        buffer.addLike(1L, 3L);
+        buffer.addLike(2L, 1L);
+        assertThat(buffer.getPendingCount()).isEqualTo(4);
+        assertThat(likesCount(1L)).isZero();
+
+        assertThat(buffer.addLike(2L, 2L).likesCount()).isEqualTo(1);
+        assertThat(likesCount(2L)).isEqualTo(1);
+        assertThrows(DbDeletionException.class, () -> buffer.deleteLike(2L, 3L));
+
+        buffer.deleteLike(1L, 1L);
+        assertThat(buffer.getPendingCount()).isEqualTo(4);
+        buffer.flush();
+        assertThat(likesCount(1L)).isEqualTo(2);
+        assertThat(likesCount(2L)).isEqualTo(2);
+    }
+
+    @Test
+    void testActionDuringFlushIsNotOvertakenBySynchronousWrite() throws Exception {
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES (4, '4@ya.ru', 'u4', 'u4', '1990-01-01')");
+        for (long userId = 1; userId <= 4; userId++) {
+            buffer.addLike(1L, userId);
+        }
+
+        //первый пакет с лайками фильма 1 застревает на блокировке строки фильма, буфер снова заполняется,
+        //и отмены тех же лайков приходят, пока пакет не записан
+        Thread flushing = new Thread(buffer::flush);
+        Thread unliking = new Thread(() -> {
+            for (long userId = 1; userId <= 4; userId++) {
+                try {
+                    buffer.deleteLike(1L, userId);
+                } catch (RuntimeException ignored) {
+                    //синхронная отмена еще не записанного лайка отвечает 404
+                }
+            }
+        });
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeQuery("SELECT * FROM films WHERE id = 1 FOR UPDATE").close();
+            }
+            flushing.start();
+            Thread.sleep(300);
+            buffer.addLike(2L, 1L);
+            buffer.addLike(2L, 2L);
+            unliking.start();
+            unliking.join(300);
+            connection.commit();
+        }
+        flushing.join();
+        unliking.join();
+        buffer.flush();
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 1", Long.class)).isZero();
+        assertThat(likesCount(1L)).isZero();
+        assertThat(likesCount(2L)).isEqualTo(2);
+        assertThat(buffer.getPendingCount()).isZero();
+    }
+
+    private long likesCount(long filmId) {
+        return jdbc.queryForObject("SELECT likes_count FROM films WHERE id = ?", Long.class, filmId);
+    }
+}
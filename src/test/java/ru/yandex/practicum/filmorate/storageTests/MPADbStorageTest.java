@@ -8,6 +8,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exceptions.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
 import ru.yandex.practicum.filmorate.storage.mpaStorage.MPADbStorage;
@@ -16,6 +17,7 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @JdbcTest
 @AutoConfigureTestDatabase
@@ -33,6 +35,7 @@ class MPADbStorageTest {
     void setup() {
         jdbc.update("DELETE FROM mpa");
         jdbc.update("ALTER TABLE mpa ALTER COLUMN id RESTART WITH 1");
+        mpaStorage.reload();
     }
 
     private MPA createTestMpa(Long id, String name) {
@@ -71,4 +74,30 @@ class MPADbStorageTest {
                 .extracting("name")
                 .containsExactly("G", "PG", "R");
     }
+
+    @Test
+    void testReturnedMpaDoNotChangeSnapshot() {
+        mpaStorage.addMpa(mpa1).setName("changed by caller");
+        mpaStorage.getOrCheckMpaById(1L).setName("changed by caller");
+        mpaStorage.getAllMpa().getFirst().setName("changed by caller");
+
+        assertEquals("G", mpaStorage.getOrCheckMpaById(1L).getName());
+    }
+
+    @Test
+    void testLookupsAreServedWithoutSql() {
+        mpaStorage.addMpa(mpa1);
+        StatementCountingJdbcTemplate countingJdbc = new StatementCountingJdbcTemplate(jdbc.getDataSource());
+        MPADbStorage cachedStorage = new MPADbStorage(countingJdbc, new MpaRowMapper());
+        cachedStorage.reload();
+        countingJdbc.reset();
+
+        assertEquals("G", cachedStorage.getOrCheckMpaById(1L).getName());
+        assertThrows(EntityNotFoundException.class, () -> cachedStorage.getOrCheckMpaById(999L));
+        assertThat(cachedStorage.getAllMpa()).extracting("name").containsExactly("G");
+        assertEquals(0, countingJdbc.getStatementCount());
+
+        cachedStorage.addMpa(mpa2);
+        assertThat(cachedStorage.getAllMpa()).extracting("name").containsExactly("G", "PG");
+    }
 }
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storageTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.metrics.SqlProfiler;
+import ru.yandex.practicum.filmorate.model.SqlStatementStats;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmDbStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//планы берутся из профилировщика: каждый запрос считается медленным и для него выполняется EXPLAIN ANALYZE
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:popular-plan", "filmorate.sql.slow-threshold=0ms",
+        "filmorate.sql.profiling.enabled=true"})
+class PopularFilmsPlanTest {
+    private static final int FILMS = 300;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private SqlProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM films_genres");
+        jdbc.update("DELETE FROM films");
+
+        List<Object[]> films = new ArrayList<>();
+        List<Object[]> genres = new ArrayList<>();
+        for (long id = 1; id <= FILMS; id++) {
+            films.add(new Object[]{id, "Film" + id, "Desc", (1990 + id % 35) + "-06-01", 100, 1 + id % 5, id % 50});
+            genres.add(new Object[]{id, 1 + id % 6});
+        }
+        jdbc.batchUpdate("INSERT INTO films (id, name, description, release_date, duration, mpa_id, likes_count)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?)", films);
+        jdbc.batchUpdate("INSERT INTO films_genres (film_id, genre_id) VALUES (?, ?)", genres);
+        jdbc.execute("ANALYZE");
+
+        profiler.setExplainSlow(true);
+        profiler.reset();
+    }
+
+    @Test
+    void testGenreFilterUsesGenreIndex() {
+        assertThat(popularFilmsPlan(1L, null, null))
+                .contains("FILMS_GENRES_GENRE_IDX")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    void testMpaFilterUsesIndex() {
+        assertThat(popularFilmsPlan(null, 3L, null))
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    void testYearFilterUsesReleaseDateIndex() {
+        assertThat(popularFilmsPlan(null, null, 2023))
+                .contains("FILMS_RELEASE_DATE_IDX")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    void testCombinedFiltersDoNotScanFilms() {
+        assertThat(popularFilmsPlan(2L, 1L, 2000))
+                .doesNotContain("tableScan");
+    }
+
+    private String popularFilmsPlan(Long genreId, Long mpaId, Integer year) {
+        filmStorage.getMostPopularFilms(10L, 0L, genreId, mpaId, year);
+        return profiler.getTop(100).stream()
+                .filter(stats -> stats.sql().contains("ORDER BY f.likes_count DESC"))
+                .map(SqlStatementStats::lastSlowPlan)
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storageTests;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//JdbcTemplate, считающий каждое выполненное выражение (в том числе через NamedParameterJdbcTemplate)
+class StatementCountingJdbcTemplate extends JdbcTemplate {
+    private int statementCount;
+
+    StatementCountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        statementCount++;
+        super.applyStatementSettings(stmt);
+    }
+
+    int getStatementCount() {
+        return statementCount;
+    }
+
+    void reset() {
+        statementCount = 0;
+    }
+}
@@ -8,24 +8,41 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmCache;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmPopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.filmStorage.FilmTitleSuggester;
+import ru.yandex.practicum.filmorate.storage.filmStorage.LikeMatrix;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserCache;
 import ru.yandex.practicum.filmorate.storage.userStorage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.userStorage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.userStorage.UserLoginSuggester;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+//без тестовой транзакции: граф друзей меняется только после коммита
 @JdbcTest
 @AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({UserDbStorage.class, UserRowMapper.class})
+@Import({UserDbStorage.class, UserRowMapper.class, FriendGraph.class, UserLoginSuggester.class, UserCache.class,
+        FilmCache.class, FilmPopularityLeaderboard.class, LikeMatrix.class, FilmTitleSuggester.class})
 class UserDbStorageTest {
     private final JdbcTemplate jdbc;
     private final UserDbStorage userStorage;
+    private final FriendGraph friendGraph;
+    private final UserLoginSuggester loginSuggester;
+    private final UserCache userCache;
 
     private User user1 = createTestUser(1L);
     private User user2 = createTestUser(2L);
@@ -37,6 +54,9 @@ class UserDbStorageTest {
         jdbc.update("DELETE FROM friendships");
         jdbc.update("DELETE FROM users");
         jdbc.update("ALTER TABLE users ALTER COLUMN id RESTART WITH 1");
+        friendGraph.rebuild();
+        loginSuggester.rebuild();
+        userCache.invalidateAll();
     }
 
     private User createTestUser(Long id) {
@@ -103,11 +123,20 @@ class UserDbStorageTest {
         User u1 = userStorage.save(user1);
         User u2 = userStorage.save(user2);
 
-        userStorage.addFriend(u1.getId(), u2.getId());
-        assertThat(userStorage.getFriendsSet(u1.getId())).containsExactly(u2.getId());
+        assertThat(userStorage.addFriend(u1.getId(), u2.getId()).getFriendSet()).containsExactly(u2.getId());
+        assertThat(userStorage.getFriendIds(u1.getId())).containsExactly(u2.getId());
 
-        userStorage.deleteFriend(u1.getId(), u2.getId());
-        assertThat(userStorage.getFriendsSet(u1.getId())).isEmpty();
+        assertThat(userStorage.deleteFriend(u1.getId(), u2.getId()).getFriendSet()).isEmpty();
+        assertThat(userStorage.getFriendIds(u1.getId())).isEmpty();
+    }
+
+    @Test
+    void testUserCannotBefriendThemselves() {
+        User u1 = userStorage.save(user1);
+
+        assertThrows(ValidationException.class, () -> userStorage.addFriend(u1.getId(), u1.getId()));
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM friendships", Integer.class)).isZero();
+        assertThat(userStorage.getFriendIds(u1.getId())).isEmpty();
     }
 
     @Test
@@ -119,23 +148,48 @@ class UserDbStorageTest {
         userStorage.addFriend(u1.getId(), u3.getId());
         userStorage.addFriend(u2.getId(), u3.getId());
 
-        Set<Long> commonFriends = userStorage.getCommonFriends(u1.getId(), u2.getId());
+        long[] commonFriends = userStorage.getCommonFriends(u1.getId(), u2.getId());
         assertThat(commonFriends).containsExactly(u3.getId());
     }
 
     @Test
-    void testFriendshipStatuses() {
-        User u1 = userStorage.save(user1);
-        User u2 = userStorage.save(user2);
-
-        userStorage.addFriend(u1.getId(), u2.getId());
-        assertThat(userStorage.statusCount(u1.getId(), u2.getId())).isEqualTo(1);
-
-        userStorage.applyStatusApproved(u1.getId(), u2.getId());
-        assertThat(userStorage.statusCount(u1.getId(), u2.getId())).isEqualTo(1);
+    void testGetByIdsKeepsRequestedOrderAcrossChunks() {
+        List<Object[]> rows = new ArrayList<>();
+        for (long id = 1; id <= 1200; id++) {
+            rows.add(new Object[]{id, id + "@ya.ru", "user" + id, "user" + id, "1990-01-01"});
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", rows);
+
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1200; id >= 1; id -= 2) {
+            ids.add(id);
+        }
+        ids.add(5000L);
+        ids.add(1200L);
+
+        List<User> users = userStorage.getByIds(ids);
+        assertThat(users).hasSize(600);
+        assertThat(users).extracting(User::getId).startsWith(1200L, 1198L).endsWith(4L, 2L);
+    }
 
-        userStorage.applyStatusPending(u2.getId(), u1.getId());
-        assertThat(userStorage.statusCount(u2.getId(), u1.getId())).isEqualTo(0);
-        //последний тест должен не найти связь в обратную сторону, поэтому 0
+    @Test
+    void testFriendGraphRebuildsFromDbAndForgetsDeletedUsers() {
+        jdbc.update("INSERT INTO users (id, email, login, name, birthday) VALUES" +
+                " (1, '1@ya.ru', 'u1', 'u1', '1990-01-01'), (2, '2@ya.ru', 'u2', 'u2', '1990-01-01')," +
+                " (3, '3@ya.ru', 'u3', 'u3', '1990-01-01'), (4, '4@ya.ru', 'u4', 'u4', '1990-01-01')," +
+                " (5, '5@ya.ru', 'u5', 'u5', '1990-01-01')");
+        jdbc.update("INSERT INTO friendships (user_id, friend_id, status) VALUES" +
+                " (1, 5, 'pending'), (1, 3, 'pending'), (1, 4, 'pending'), (2, 4, 'pending'), (2, 3, 'pending')," +
+                " (2, 1, 'pending')");
+        friendGraph.rebuild();
+
+        assertThat(friendGraph.getFriends(1L)).containsExactly(3L, 4L, 5L);
+        assertThat(userStorage.getCommonFriends(1L, 2L)).containsExactly(3L, 4L);
+        assertThat(userStorage.getByIds(List.of(3L, 4L)))
+                .extracting(User::getLogin).containsExactly("u3", "u4");
+
+        userStorage.delete(3L);
+        assertThat(userStorage.getCommonFriends(1L, 2L)).containsExactly(4L);
+        assertThat(friendGraph.getFriends(3L)).isEmpty();
     }
-}
\ No newline at end of file
+}